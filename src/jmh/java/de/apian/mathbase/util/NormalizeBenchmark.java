@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.Normalizer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messung der Normalisierung von Titeln mit <a href="https://openjdk.org/projects/code-tools/jmh/">JMH</a>.
+ * <p>
+ * Verglichen werden {@link FileUtils#normalize(String)} mit Treffer im Zwischenspeicher, ohne Treffer, d.h. für einen
+ * noch nie normalisierten Titel, und die ursprüngliche Normalisierung. Ausgeführt wird die Messung mit
+ * {@code org.openjdk.jmh:jmh-core} und dem Annotationsprozessor {@code jmh-generator-annprocess} auf dem Klassenpfad:
+ * <pre>
+ * java -cp &lt;Klassenpfad&gt; org.openjdk.jmh.Main NormalizeBenchmark
+ * </pre>
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizeBenchmark {
+
+    /**
+     * Typische Titel und Beschriftungen, teils schon normalisiert
+     *
+     * @since 1.0
+     */
+    private static final String[] TITLES = {
+            "Asymmetrische Kryptologie", "Kombinatorik", "Säfte", "Arbeitsblätter", "Größter gemeinsamer Teiler",
+            "Übungsaufgaben zur Stochastik", "Binomialverteilung (Teil 2)", "Poincaré-Vermutung",
+            "harte_arbeit.pdf", "benes_gurke.mp4", "Ableitung von f(x) = x²", "Straße"
+    };
+
+    /**
+     * Position des nächsten Titels bzw. Zähler für noch nie normalisierte Titel
+     *
+     * @since 1.0
+     */
+    private long next;
+
+    @Benchmark
+    public String normalizeCached() {
+        return FileUtils.normalize(nextTitle());
+    }
+
+    @Benchmark
+    public String normalizeUncached() {
+        // Der Zähler macht jeden Titel neu; die Verkettung kostet bei legacyUncached genauso viel
+        return FileUtils.normalize(nextTitle() + next);
+    }
+
+    @Benchmark
+    public String legacy() {
+        return legacyNormalize(nextTitle());
+    }
+
+    @Benchmark
+    public String legacyUncached() {
+        return legacyNormalize(nextTitle() + next);
+    }
+
+    private String nextTitle() {
+        return TITLES[(int) (next++ % TITLES.length)];
+    }
+
+    /**
+     * Ursprüngliche Normalisierung vor Einführung der Ersetzungstabelle
+     *
+     * @param s Ausgangs-{@code String}
+     * @return Normalisierter {@code String}
+     * @since 1.0
+     */
+    private static String legacyNormalize(String s) {
+        s = s.toLowerCase().replace(" ", "_")
+                .replace("ä", "ae")
+                .replace("ö", "oe")
+                .replace("ü", "ue")
+                .replace("ß", "ss");
+        return Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("[^a-z_0-9.\\-]", "");
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messung des Speicherns des Themenbaums mit <a href="https://openjdk.org/projects/code-tools/jmh/">JMH</a>.
+ * <p>
+ * Verglichen werden der {@link TopicTreeWriter} und das ursprüngliche Speichern über ein DOM-Dokument und einen
+ * {@link Transformer}. Beide schreiben in den Speicher, damit die Platte das Ergebnis nicht verfälscht. Ausgeführt
+ * wird die Messung mit {@code org.openjdk.jmh:jmh-core} und dem Annotationsprozessor
+ * {@code jmh-generator-annprocess} auf dem Klassenpfad:
+ * <pre>
+ * java -cp &lt;Klassenpfad&gt; org.openjdk.jmh.Main TopicTreeWriterBenchmark
+ * </pre>
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicTreeWriterBenchmark {
+
+    /**
+     * Anzahl der Unterthemen je Thema auf jeder der drei Ebenen; bei 20 sind es gut 8.000 Themen
+     *
+     * @since 1.0
+     */
+    @Param({"5", "20"})
+    private int breadth;
+
+    /**
+     * Wurzel des gemessenen Themenbaums
+     *
+     * @since 1.0
+     */
+    private Topic root;
+
+    @Setup
+    public void createTree() {
+        root = new Topic(null);
+        addChildren(root, "Thema", 3);
+    }
+
+    /**
+     * Rekursives Erzeugen von Unterthemen mit je zwei Inhalten, teils mit Zeichen, die maskiert werden müssen
+     *
+     * @param parent Elternthema
+     * @param prefix Anfang der Titel
+     * @param depth  Anzahl der noch zu erzeugenden Ebenen
+     * @since 1.0
+     */
+    private void addChildren(Topic parent, String prefix, int depth) {
+        if (depth == 0)
+            return;
+        for (int i = 0; i < breadth; i++) {
+            Topic child = new Topic(prefix + " " + i);
+            child.getContents().add(new Content(Content.Type.WORKSHEET, "blatt_" + i + ".pdf",
+                    "Übungen & Lösungen \"" + i + "\""));
+            child.getContents().add(new Content(Content.Type.IMAGE, "bild_" + i + ".png", null));
+            parent.addChild(child);
+            addChildren(child, child.getTitle(), depth - 1);
+        }
+    }
+
+    @Benchmark
+    public byte[] writer() {
+        return TopicTreeWriter.toByteArray(root);
+    }
+
+    @Benchmark
+    public byte[] legacy() throws Exception {
+        return legacySave(root);
+    }
+
+    /**
+     * Ursprüngliches Speichern vor Einführung des {@link TopicTreeWriter}s: Übertragen in ein DOM-Dokument,
+     * Entfernen von Whitespace und Ausgabe durch einen {@link Transformer}
+     *
+     * @param root Wurzel des Themenbaums
+     * @return Inhalt der XML-Datei in UTF-8
+     * @throws Exception wenn das Erzeugen oder Transformieren fehlschlägt
+     * @since 1.0
+     */
+    private static byte[] legacySave(Topic root) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        document.setXmlStandalone(false);
+        Element rootElement = document.createElement(TopicTreeController.TAG_ROOT);
+        document.appendChild(rootElement);
+        appendChildren(document, rootElement, root);
+
+        // Entfernen von Whitespace
+        document.normalizeDocument();
+        NodeList nodeList = (NodeList) XPathFactory.newInstance().newXPath()
+                .evaluate("//text()[normalize-space()='']", document, XPathConstants.NODESET);
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Node node = nodeList.item(i);
+            node.getParentNode().removeChild(node);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransformerFactory factory = TransformerFactory.newInstance();
+        factory.setAttribute("indent-number", "4");
+        Transformer transformer = factory.newTransformer();
+        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        transformer.setOutputProperty("{http://xml.apache.org/xalan}indent-amount", "4");
+        transformer.transform(new DOMSource(document), new StreamResult(out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Rekursives Übertragen der Unterthemen und Inhalte eines Themas in das Dokument
+     *
+     * @param document Dokument
+     * @param element  Element, unter das übertragen wird
+     * @param topic    Zu übertragendes Thema
+     * @since 1.0
+     */
+    private static void appendChildren(Document document, Element element, Topic topic) {
+        for (Content content : topic.getContents()) {
+            Element contentElement = document.createElement(TopicTreeController.TAG_CONTENT);
+            contentElement.setAttribute(TopicTreeController.ATTR_TYPE, content.getType().toString());
+            contentElement.setAttribute(TopicTreeController.ATTR_FILENAME, content.getFilename());
+            if (content.getCaption() != null)
+                contentElement.setAttribute(TopicTreeController.ATTR_CAPTION, content.getCaption());
+            element.appendChild(contentElement);
+        }
+        for (Topic child : topic.getChildren()) {
+            Element childElement = document.createElement(TopicTreeController.TAG_NODE);
+            childElement.setAttribute(TopicTreeController.ATTR_TITLE, child.getTitle());
+            element.appendChild(childElement);
+            appendChildren(document, childElement, child);
+        }
+    }
+}
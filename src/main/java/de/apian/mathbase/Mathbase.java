@@ -7,6 +7,7 @@
 package de.apian.mathbase;
 
 import de.apian.mathbase.gui.MainPane;
+import de.apian.mathbase.gui.dialog.ErrorAlert;
 import de.apian.mathbase.util.Constants;
 import de.apian.mathbase.util.Images;
 import de.apian.mathbase.util.Logging;
@@ -85,12 +86,13 @@ public class Mathbase extends Application {
      * @since 1.0
      */
     private void cleanUp() {
+        stage.hide();
         try {
-            TopicTreeController.backupFile();
+            TopicTreeController.getInstance().close();
         } catch (IOException e) {
-            Logging.log(Level.WARNING, "Backup konnte nicht erstellt werden", e);
+            Logging.log(Level.SEVERE, "Ungespeicherte Änderungen konnten nicht gespeichert werden", e);
+            new ErrorAlert(e).showAndWait();
         }
-        stage.hide();
         Logging.log(Level.INFO, "Programm korrekt beendet");
         System.exit(0);
     }
@@ -7,13 +7,15 @@
 package de.apian.mathbase.gui.content;
 
 import de.apian.mathbase.gui.MainPane;
+import de.apian.mathbase.gui.dialog.ProgressDialog;
 import de.apian.mathbase.gui.dialog.WarningAlert;
 import de.apian.mathbase.util.Constants;
 import de.apian.mathbase.util.FileUtils;
 import de.apian.mathbase.util.Images;
 import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.xml.AsyncTopicTreeController;
 import de.apian.mathbase.xml.Content;
-import de.apian.mathbase.xml.TopicTreeController;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
@@ -29,7 +31,6 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.FileChooser;
 
-import javax.xml.transform.TransformerException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -85,12 +86,23 @@ class AbstractTile extends BorderPane {
                     getString("file"), "*" + FileUtils.getFileExtension(from)));
             File file = fileChooser.showSaveDialog(getScene().getWindow());
             if (file != null) {
-                try {
-                    FileUtils.copy(from, file.toPath());
-                } catch (IOException e) {
-                    Logging.log(Level.WARNING, "Datei abspeichern fehlgeschlagen!", e);
-                    new WarningAlert().showAndWait();
-                }
+                // Große Dateien, z.B. Videos, im Hintergrund kopieren, damit die Oberfläche bedienbar bleibt
+                ProgressDialog dialog = new ProgressDialog(getScene().getWindow(),
+                        Constants.BUNDLE.getString("save_file"), file.getName());
+                new Thread(() -> {
+                    try {
+                        FileUtils.copy(from, file.toPath(), dialog);
+                    } catch (IOException e) {
+                        Logging.log(Level.WARNING, "Datei abspeichern fehlgeschlagen!", e);
+                        Platform.runLater(() -> {
+                            dialog.close();
+                            new WarningAlert().showAndWait();
+                        });
+                    } finally {
+                        dialog.finish();
+                    }
+                }, "Mathbase-Speichern").start();
+                dialog.show();
             }
         });
         Button removeButton = new Button(null, new ImageView(Images.getInternal("icons_x16/remove.png")));
@@ -152,11 +164,13 @@ class AbstractTile extends BorderPane {
     }
 
     private void onDragDropped(DragEvent event) {
-        try {
-            TopicTreeController.getInstance().swapContents(sourceContent, targetContent, contentPane.getTitle());
-            mainPane.setContent(new ContentPane(contentPane.getTitle(), mainPane));
-        } catch (IOException | TransformerException e) {
-            new WarningAlert().showAndWait();
-        }
+        AsyncTopicTreeController.getInstance().swapContents(sourceContent, targetContent, contentPane.getTitle())
+                .whenComplete((v, e) -> {
+                    if (e != null) {
+                        new WarningAlert().showAndWait();
+                        return;
+                    }
+                    mainPane.setContent(new ContentPane(contentPane.getTitle(), mainPane));
+                });
     }
 }
@@ -13,6 +13,7 @@ import de.apian.mathbase.gui.dialog.WarningAlert;
 import de.apian.mathbase.util.Constants;
 import de.apian.mathbase.util.Images;
 import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.xml.AsyncTopicTreeController;
 import de.apian.mathbase.xml.Content;
 import de.apian.mathbase.xml.TopicTreeController;
 import javafx.geometry.Insets;
@@ -26,8 +27,6 @@ import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 
-import javax.xml.transform.TransformerException;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -90,15 +89,15 @@ public class ContentPane extends BorderPane {
         addButton.setOnAction(a -> {
             ContentAdditionDialog dialog = new ContentAdditionDialog(mainPane.getScene().getWindow());
             Optional<Content> result = dialog.showAndWait();
-            if (result.isPresent()) {
-                try {
-                    TopicTreeController.getInstance().addContent(result.get(), title);
-                    mainPane.setContent(new ContentPane(title, mainPane));
-                } catch (IOException | TransformerException e) {
-                    Logging.log(Level.WARNING, "Inhalt hinzufügen fehlgeschlagen!", e);
-                    new WarningAlert().showAndWait();
-                }
-            }
+            result.ifPresent(content -> AsyncTopicTreeController.getInstance().addContent(content, title)
+                    .whenComplete((v, e) -> {
+                        if (e != null) {
+                            Logging.log(Level.WARNING, "Inhalt hinzufügen fehlgeschlagen!", e);
+                            new WarningAlert().showAndWait();
+                            return;
+                        }
+                        mainPane.setContent(new ContentPane(title, mainPane));
+                    }));
         });
 
         BorderPane titlePane = new BorderPane();
@@ -139,8 +138,9 @@ public class ContentPane extends BorderPane {
 
         // Füllen mit Inhalt
         Content[] contents = TopicTreeController.getInstance().getContents(title);
+        String directoryPath = TopicTreeController.getInstance().locateDirectory(title);
         for (Content content : contents)
-            contentGrid.getChildren().add(createTile(content, TopicTreeController.getInstance().locateDirectory(title)));
+            contentGrid.getChildren().add(createTile(content, directoryPath));
 
         // Herstellen der Responsivität
         widthProperty().addListener((observable, oldValue, newValue) -> {
@@ -188,13 +188,14 @@ public class ContentPane extends BorderPane {
      * @since 1.0
      */
     public void removeContent(Content content) {
-            try {
-                TopicTreeController.getInstance().removeContent(content, title);
-                mainPane.setContent(new ContentPane(title, mainPane));
-            } catch (IOException | TransformerException e) {
+        AsyncTopicTreeController.getInstance().removeContent(content, title).whenComplete((v, e) -> {
+            if (e != null) {
                 Logging.log(Level.WARNING, "Inhalt löschen fehlgeschlagen!", e);
                 new WarningAlert().showAndWait();
+                return;
             }
+            mainPane.setContent(new ContentPane(title, mainPane));
+        });
     }
 
     public String getTitle() {
@@ -13,8 +13,8 @@ import de.apian.mathbase.gui.dialog.WarningAlert;
 import de.apian.mathbase.util.Constants;
 import de.apian.mathbase.util.Images;
 import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.xml.AsyncTopicTreeController;
 import de.apian.mathbase.xml.Content;
-import de.apian.mathbase.xml.TopicTreeController;
 import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Pos;
@@ -26,7 +26,6 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.StackPane;
 import org.jpedal.PdfDecoder;
 
-import javax.xml.transform.TransformerException;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
@@ -59,15 +58,15 @@ public class LinkTile extends AbstractTile {
             CaptionDialog dialog = new CaptionDialog(mainPane, content.getCaption());
             dialog.setHeaderText(Constants.BUNDLE.getString("rename_content"));
             Optional<String> result = dialog.showAndWait();
-            result.ifPresent(caption -> {
-                try {
-                    TopicTreeController.getInstance().renameContent(content, contentPane.getTitle(), caption);
-                    mainPane.setContent(new ContentPane(contentPane.getTitle(), mainPane));
-                } catch (IOException | TransformerException e) {
-                    Logging.log(Level.WARNING, "Inhalt " + content + " konnte nicht umbenannt werden", e);
-                    new WarningAlert().showAndWait();
-                }
-            });
+            result.ifPresent(caption -> AsyncTopicTreeController.getInstance()
+                    .renameContent(content, contentPane.getTitle(), caption).whenComplete((v, e) -> {
+                        if (e != null) {
+                            Logging.log(Level.WARNING, "Inhalt " + content + " konnte nicht umbenannt werden", e);
+                            new WarningAlert().showAndWait();
+                            return;
+                        }
+                        mainPane.setContent(new ContentPane(contentPane.getTitle(), mainPane));
+                    }));
         });
 
         new Thread(this::initDisplay).start();
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.gui.dialog;
+
+import de.apian.mathbase.util.ProgressListener;
+import javafx.application.Platform;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.ProgressBar;
+import javafx.stage.Window;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Anzeige des Fortschritts einer im Hintergrund laufenden Arbeit.
+ * <p>
+ * Der Dialog kann erst geschlossen werden, sobald die Arbeit mit {@link #finish()} als beendet gemeldet wurde.
+ * Alle Methoden dürfen aus beliebigen Threads aufgerufen werden.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class ProgressDialog extends Dialog<Void> implements ProgressListener {
+
+    /**
+     * Fortschrittsbalken
+     *
+     * @since 1.0
+     */
+    private final ProgressBar progressBar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+
+    /**
+     * Höchster bisher gemeldeter Fortschritt in Prozent, damit die Oberfläche nur bei sichtbaren Änderungen
+     * aktualisiert wird und der Balken bei Meldungen aus mehreren Threads nie zurückspringt
+     *
+     * @since 1.0
+     */
+    private final AtomicInteger lastPercent = new AtomicInteger(-1);
+
+    /**
+     * Konstruktion des Dialogs
+     *
+     * @param owner  Besitzendes Fenster
+     * @param title  Titel des Dialogs
+     * @param header Kopfzeile des Dialogs
+     * @since 1.0
+     */
+    public ProgressDialog(Window owner, String title, String header) {
+        initOwner(owner);
+        setTitle(title);
+        setHeaderText(header);
+
+        progressBar.setPrefWidth(360);
+        getDialogPane().setContent(progressBar);
+        getDialogPane().getButtonTypes().add(ButtonType.OK);
+        getDialogPane().lookupButton(ButtonType.OK).setDisable(true);
+    }
+
+    /**
+     * Mitteilen des aktuellen Fortschritts
+     *
+     * @param done  Bereits erledigte Menge
+     * @param total Gesamte Menge
+     * @since 1.0
+     */
+    @Override
+    public void progress(long done, long total) {
+        if (total <= 0)
+            return;
+        int percent = (int) (done * 100 / total);
+        int last;
+        do {
+            last = lastPercent.get();
+            if (percent <= last)
+                return;
+        } while (!lastPercent.compareAndSet(last, percent));
+
+        // Den dann aktuellen Stand anzeigen, da die Aktualisierungen verschiedener Threads überholen können
+        Platform.runLater(() -> progressBar.setProgress(lastPercent.get() / 100.0));
+    }
+
+    /**
+     * Melden des Endes der Arbeit, unabhängig von deren Erfolg. Danach kann der Dialog geschlossen werden.
+     *
+     * @since 1.0
+     */
+    public void finish() {
+        Platform.runLater(() -> {
+            progressBar.setProgress(1);
+            getDialogPane().lookupButton(ButtonType.OK).setDisable(false);
+        });
+    }
+}
@@ -7,9 +7,11 @@
 package de.apian.mathbase.gui.topictree;
 
 import de.apian.mathbase.gui.MainPane;
+import de.apian.mathbase.gui.dialog.ProgressDialog;
+import de.apian.mathbase.gui.dialog.WarningAlert;
 import de.apian.mathbase.util.Constants;
-import de.apian.mathbase.xml.TitleCollisionException;
-import de.apian.mathbase.xml.TopicTreeController;
+import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.xml.AsyncTopicTreeController;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.TreeCell;
@@ -18,10 +20,8 @@ import javafx.scene.effect.InnerShadow;
 import javafx.scene.input.*;
 import javafx.scene.paint.Color;
 
-import javax.xml.transform.TransformerException;
-import java.io.IOException;
-import java.util.Comparator;
 import java.util.Optional;
+import java.util.logging.Level;
 
 /**
  * Ziehbarer Themenbaumeintrag für Drag and Drop.
@@ -142,20 +142,36 @@ public class DraggableTreeCell extends TreeCell<String> {
             if (targetItem == null)
                 targetItem = getTreeView().getRoot();
 
-            try {
-                TopicTreeController.getInstance().moveNode(sourceItem.getValue(), targetItem.getValue());
-                sourceItem.getParent().getChildren().remove(sourceItem);
-                targetItem.getChildren().add(sourceItem);
-                targetItem.setExpanded(true);
-                targetItem.getChildren().sort(Comparator.comparing(TreeItem::getValue));
-            } catch (IOException | TitleCollisionException | TransformerException e) {
-                e.printStackTrace();
-            }
+            // Die Felder können sich bis zum Abschluss durch weiteres Ziehen ändern
+            TreeItem<String> source = sourceItem;
+            TreeItem<String> target = targetItem;
+
+            // Unterthemen vor der Änderung laden, sonst taucht das verschobene Thema doppelt auf
+            target.getChildren();
+
+            // Der Ordner wird nur zwischen Dateisystemen kopiert, sonst schließt der Dialog sofort wieder
+            ProgressDialog dialog = new ProgressDialog(mainPane.getScene().getWindow(),
+                    Constants.BUNDLE.getString("move_topic"), source.getValue());
+            AsyncTopicTreeController.getInstance().moveNode(source.getValue(), target.getValue(), dialog)
+                    .whenComplete((v, e) -> {
+                        dialog.finish();
+                        dialog.close();
+                        if (e != null) {
+                            Logging.log(Level.WARNING, "Knoten verschieben fehlgeschlagen!", e);
+                            new WarningAlert().showAndWait();
+                            return;
+                        }
+                        source.getParent().getChildren().remove(source);
+                        TopicTreeItem.insertSorted(target, source);
+                        target.setExpanded(true);
+                    });
+            dialog.show();
         }
     }
 
     /**
      * Prüfung auf Elternschaft eines bestimmten Knotens bezüglich eines anderen.
+     * Es wird von unten nach oben gesucht, damit keine noch nicht geladenen Unterthemen geladen werden.
      *
      * @param child  mutmaßlicher Kindknoten
      * @param parent Ausgangsknoten
@@ -163,11 +179,10 @@ public class DraggableTreeCell extends TreeCell<String> {
      * @since 1.0
      */
     private boolean isChild(TreeItem<String> child, TreeItem<String> parent) {
-        boolean isChild = false;
-        for (TreeItem<String> item : parent.getChildren()) {
-            if (item == child || isChild(child, item))
-                isChild = true;
+        for (TreeItem<String> item = child.getParent(); item != null; item = item.getParent()) {
+            if (item == parent)
+                return true;
         }
-        return isChild;
+        return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.gui.topictree;
+
+import de.apian.mathbase.util.TitleOrder;
+import de.apian.mathbase.xml.TopicTreeController;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+
+import java.text.CollationKey;
+import java.util.List;
+
+/**
+ * Eintrag des Themenbaums, der seine Unterthemen erst beim ersten Zugriff lädt.
+ * <p>
+ * Solange ein Eintrag nicht aufgeklappt wurde, werden für seine Unterthemen keine {@code TreeItem}s erzeugt.
+ * Ob er überhaupt aufklappbar ist, wird über die günstige Abfrage der Anzahl der Unterthemen ermittelt.
+ * Der Aufwand beim Start hängt damit nur noch davon ab, was tatsächlich aufgeklappt wird.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class TopicTreeItem extends TreeItem<String> {
+
+    /**
+     * Ob die Unterthemen bereits geladen wurden
+     *
+     * @since 1.0
+     */
+    private boolean loaded;
+
+    /**
+     * Sortierschlüssel des Titels; {@code null}, solange er nicht benötigt wurde oder nachdem der Titel sich
+     * geändert hat
+     *
+     * @since 1.0
+     */
+    private CollationKey sortKey;
+
+    /**
+     * Konstruktion eines Eintrags
+     *
+     * @param title Titel des Themas; {@code null} bei der Wurzel
+     * @since 1.0
+     */
+    TopicTreeItem(String title) {
+        super(title);
+        valueProperty().addListener((observable, oldValue, newValue) -> sortKey = null);
+    }
+
+    /**
+     * Einfügen eines Eintrags an der richtigen Stelle unter den bereits sortierten Einträgen eines anderen, statt alle
+     * neu zu sortieren. Die Reihenfolge ist dieselbe wie im Themenbaum, siehe {@link TitleOrder}.
+     *
+     * @param parent Elterneintrag
+     * @param child  Einzufügender Eintrag
+     * @since 1.0
+     */
+    static void insertSorted(TreeItem<String> parent, TreeItem<String> child) {
+        List<TreeItem<String>> siblings = parent.getChildren();
+        siblings.add(TitleOrder.insertionIndex(siblings, sortKey(child), TopicTreeItem::sortKey), child);
+    }
+
+    /**
+     * Sortierschlüssel eines Eintrags. Bei Einträgen dieser Klasse wird er zwischengespeichert.
+     *
+     * @param item Eintrag
+     * @return Sortierschlüssel seines Titels
+     * @since 1.0
+     */
+    private static CollationKey sortKey(TreeItem<String> item) {
+        if (!(item instanceof TopicTreeItem))
+            return TitleOrder.keyOf(item.getValue());
+
+        TopicTreeItem topicItem = (TopicTreeItem) item;
+        if (topicItem.sortKey == null)
+            topicItem.sortKey = TitleOrder.keyOf(topicItem.getValue());
+        return topicItem.sortKey;
+    }
+
+    /**
+     * Unterthemen dieses Eintrags. Beim ersten Aufruf werden sie vom {@link TopicTreeController} geladen.
+     * <p>
+     * Wer den Themenbaum verändert und danach Einträge von Hand hinzufügt, muss diese Methode daher schon
+     * <em>vor</em> der Änderung aufrufen, da die neuen Unterthemen sonst doppelt auftauchen.
+     *
+     * @return Unterthemen dieses Eintrags
+     * @since 1.0
+     */
+    @Override
+    public ObservableList<TreeItem<String>> getChildren() {
+        if (!loaded) {
+            loaded = true;
+            for (String title : TopicTreeController.getInstance().getChildren(getValue()))
+                super.getChildren().add(new TopicTreeItem(title));
+        }
+        return super.getChildren();
+    }
+
+    /**
+     * @return ob dieser Eintrag keine Unterthemen hat, ohne diese dafür zu laden
+     * @since 1.0
+     */
+    @Override
+    public boolean isLeaf() {
+        if (loaded)
+            return super.getChildren().isEmpty();
+        return TopicTreeController.getInstance().getChildCount(getValue()) == 0;
+    }
+}
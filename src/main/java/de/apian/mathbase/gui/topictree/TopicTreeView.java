@@ -11,21 +11,25 @@ import de.apian.mathbase.gui.HelpWindow;
 import de.apian.mathbase.gui.MainPane;
 import de.apian.mathbase.gui.content.ContentPane;
 import de.apian.mathbase.gui.dialog.ErrorAlert;
+import de.apian.mathbase.gui.dialog.ProgressDialog;
 import de.apian.mathbase.gui.dialog.TitleDialog;
 import de.apian.mathbase.gui.dialog.WarningAlert;
 import de.apian.mathbase.util.Constants;
+import de.apian.mathbase.util.FileUtils;
 import de.apian.mathbase.util.Images;
 import de.apian.mathbase.util.Logging;
-import de.apian.mathbase.xml.TitleCollisionException;
+import de.apian.mathbase.xml.AsyncTopicTreeController;
+import de.apian.mathbase.xml.TopicExporter;
+import de.apian.mathbase.xml.TopicImporter;
 import de.apian.mathbase.xml.TopicTreeController;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 
-import javax.xml.transform.TransformerException;
-import java.io.IOException;
-import java.util.Comparator;
+import java.io.File;
 import java.util.Optional;
 import java.util.logging.Level;
 
@@ -65,26 +69,13 @@ public class TopicTreeView extends TreeView<String> {
     }
 
     /**
-     * Füllen des Themenbaums
+     * Füllen des Themenbaums. Die Unterthemen werden erst beim Aufklappen geladen.
      *
+     * @see TopicTreeItem
      * @since 1.0
      */
     public void build() {
-        build(getRoot());
-    }
-
-    /**
-     * Rekursives Füllen ab der Wurzel
-     *
-     * @param parent Jeweiliger Elternknoten im Themenbaum
-     * @since 1.0
-     */
-    private void build(TreeItem<String> parent) {
-        for (String s : TopicTreeController.getInstance().getChildren(parent.getValue())) {
-            TreeItem<String> child = new TreeItem<>(s);
-            parent.getChildren().add(child);
-            build(child);
-        }
+        setRoot(new TopicTreeItem(null));
     }
 
     /**
@@ -96,44 +87,32 @@ public class TopicTreeView extends TreeView<String> {
      */
     public TreeView<String> filter(String key) {
         TopicTreeView treeView = new TopicTreeView(mainPane);
-        filter(getRoot(), treeView.getRoot(), key);
+        filter(null, treeView.getRoot(), key.toLowerCase());
         return treeView;
     }
 
     /**
-     * Rekursive Konstruktion eines gefilterten Baums ab der Wurzel
+     * Rekursive Konstruktion eines gefilterten Baums ab der Wurzel in einem einzigen Durchlauf.
+     * Die Titel werden dabei direkt vom {@link TopicTreeController} abgefragt, damit der eigentliche Themenbaum
+     * nicht vollständig geladen werden muss.
      *
-     * @param originalParent Elternknoten im originalen Baum
+     * @param parent         Titel des Elternknotens im originalen Baum
      * @param filteredParent Elternknoten im gefilterten Baum
-     * @param key            Suchbegriff
+     * @param key            Suchbegriff in Kleinbuchstaben
+     * @return ob der Suchbegriff im Teilbaum unter {@code parent} enthalten ist
      * @since 1.0
      */
-    private void filter(TreeItem<String> originalParent, TreeItem<String> filteredParent, String key) {
-        for (TreeItem<String> originalChild : originalParent.getChildren()) {
-            if (subtreeContainsIgnoreCase(originalChild, key)) {
-                TreeItem<String> filteredChild = new TreeItem<>(originalChild.getValue());
-                filteredChild.setExpanded(true);
+    private boolean filter(String parent, TreeItem<String> filteredParent, String key) {
+        boolean found = false;
+        for (String title : TopicTreeController.getInstance().getChildren(parent)) {
+            TreeItem<String> filteredChild = new TreeItem<>(title);
+            filteredChild.setExpanded(true);
+            if (filter(title, filteredChild, key) || title.toLowerCase().contains(key)) {
                 filteredParent.getChildren().add(filteredChild);
-                filter(originalChild, filteredChild, key);
+                found = true;
             }
         }
-    }
-
-    /**
-     * Prüfung eines Teilbaums auf enthalten eines Suchbegriffes
-     *
-     * @param parent Elternknoten
-     * @param key    Suchbegriff
-     * @return Boolesche Aussage, ob der Suchbegriff enthalten ist
-     * @since 1.0
-     */
-    private boolean subtreeContainsIgnoreCase(TreeItem<String> parent, String key) {
-        if (parent.getValue().toLowerCase().contains(key.toLowerCase()))
-            return true;
-        for (TreeItem<String> child : parent.getChildren())
-            if (child.getValue().toLowerCase().contains(key.toLowerCase()) || subtreeContainsIgnoreCase(child, key))
-                return true;
-        return false;
+        return found;
     }
 
     /**
@@ -170,6 +149,18 @@ public class TopicTreeView extends TreeView<String> {
         addItem.setGraphic(new ImageView(Images.getInternal("icons_x16/add.png")));
         addItem.setOnAction(a -> addUnderSelected());
 
+        MenuItem importItem = new MenuItem(Constants.BUNDLE.getString("import_directory"));
+        importItem.setGraphic(new ImageView(Images.getInternal("icons_x16/add.png")));
+        importItem.setOnAction(a -> importUnderSelected());
+
+        MenuItem importArchiveItem = new MenuItem(Constants.BUNDLE.getString("import_archive"));
+        importArchiveItem.setGraphic(new ImageView(Images.getInternal("icons_x16/add.png")));
+        importArchiveItem.setOnAction(a -> importArchiveUnderSelected());
+
+        MenuItem exportItem = new MenuItem(Constants.BUNDLE.getString("export_topic"));
+        exportItem.setGraphic(new ImageView(Images.getInternal("icons_x16/save.png")));
+        exportItem.setOnAction(a -> exportSelected());
+
         MenuItem renameItem = new MenuItem(Constants.BUNDLE.getString("rename"));
         renameItem.setGraphic(new ImageView(Images.getInternal("icons_x16/rename.png")));
         renameItem.setOnAction(a -> renameSelected());
@@ -190,7 +181,7 @@ public class TopicTreeView extends TreeView<String> {
         helpItem.setGraphic(new ImageView(Images.getInternal("icons_x16/help.png")));
         helpItem.setOnAction(a -> new HelpWindow(mainPane).show());
 
-        contextMenu.getItems().addAll(addItem, renameItem, removeItem, new SeparatorMenuItem(),
+        contextMenu.getItems().addAll(addItem, importItem, importArchiveItem, exportItem, renameItem, removeItem, new SeparatorMenuItem(),
                 expandItem, collapseItem, new SeparatorMenuItem(), helpItem);
         setContextMenu(contextMenu);
     }
@@ -206,21 +197,120 @@ public class TopicTreeView extends TreeView<String> {
         dialog.setHeaderText(Constants.BUNDLE.getString("add_topic"));
         Optional<String> result = dialog.showAndWait();
         result.ifPresent(title -> {
-            TreeItem<String> selectedItem = getSelectionModel().getSelectedItem();
-            if (selectedItem == null)
-                selectedItem = getRoot();
-
-            try {
-                TopicTreeController.getInstance().addNode(title, selectedItem.getValue());
-                TreeItem<String> newItem = new TreeItem<>(title);
-                selectedItem.getChildren().add(newItem);
-                selectedItem.getChildren().sort(Comparator.comparing(TreeItem::getValue));
+            TreeItem<String> selectedItem = getSelectionModel().getSelectedItem() != null
+                    ? getSelectionModel().getSelectedItem() : getRoot();
+            // Unterthemen vor der Änderung laden, sonst taucht das neue Thema doppelt auf
+            selectedItem.getChildren();
+
+            AsyncTopicTreeController.getInstance().addNode(title, selectedItem.getValue()).whenComplete((v, e) -> {
+                if (e != null) {
+                    Logging.log(Level.WARNING, "Knoten \"" + title + "\" konnte nicht erstellt werden.", e);
+                    new ErrorAlert(e).showAndWait();
+                    return;
+                }
+                TopicTreeItem.insertSorted(selectedItem, new TopicTreeItem(title));
                 selectedItem.setExpanded(true);
-            } catch (IOException | TitleCollisionException | TransformerException e) {
-                Logging.log(Level.WARNING, "Knoten \"" + title + "\" konnte nicht erstellt werden.", e);
+            });
+        });
+    }
+
+    /**
+     * Festlegung der Aktionen beim Importieren eines Ordners. Der Import läuft im Hintergrund,
+     * das neue Thema erscheint erst nach dessen Abschluss im Themenbaum.
+     *
+     * @see TopicImporter
+     * @since 1.0
+     */
+    private void importUnderSelected() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle(Constants.BUNDLE.getString("import_directory"));
+        File directory = directoryChooser.showDialog(mainPane.getScene().getWindow());
+        if (directory == null)
+            return;
+
+        TreeItem<String> selectedItem = getSelectionModel().getSelectedItem() != null
+                ? getSelectionModel().getSelectedItem() : getRoot();
+        // Unterthemen vor der Änderung laden, sonst taucht das neue Thema doppelt auf
+        selectedItem.getChildren();
+
+        AsyncTopicTreeController.getInstance().importDirectory(directory.toPath(), selectedItem.getValue())
+                .whenComplete((title, e) -> {
+                    if (e != null) {
+                        Logging.log(Level.WARNING, "Ordner \"" + directory + "\" konnte nicht importiert werden.", e);
+                        new ErrorAlert(e).showAndWait();
+                        return;
+                    }
+                    TopicTreeItem.insertSorted(selectedItem, new TopicTreeItem(title));
+                    selectedItem.setExpanded(true);
+                });
+    }
+
+    /**
+     * Festlegung der Aktionen beim Importieren eines Archivs. Der Import läuft im Hintergrund,
+     * das neue Thema erscheint erst nach dessen Abschluss im Themenbaum.
+     *
+     * @see TopicImporter#importArchive(java.nio.file.Path, String)
+     * @since 1.0
+     */
+    private void importArchiveUnderSelected() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(Constants.BUNDLE.getString("import_archive"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(Constants.BUNDLE
+                .getString("zip_archive"), "*.zip"));
+        File file = fileChooser.showOpenDialog(mainPane.getScene().getWindow());
+        if (file == null)
+            return;
+
+        TreeItem<String> selectedItem = getSelectionModel().getSelectedItem() != null
+                ? getSelectionModel().getSelectedItem() : getRoot();
+        // Unterthemen vor der Änderung laden, sonst taucht das neue Thema doppelt auf
+        selectedItem.getChildren();
+
+        AsyncTopicTreeController.getInstance().importArchive(file.toPath(), selectedItem.getValue())
+                .whenComplete((title, e) -> {
+                    if (e != null) {
+                        Logging.log(Level.WARNING, "Archiv \"" + file + "\" konnte nicht importiert werden.", e);
+                        new ErrorAlert(e).showAndWait();
+                        return;
+                    }
+                    TopicTreeItem.insertSorted(selectedItem, new TopicTreeItem(title));
+                    selectedItem.setExpanded(true);
+                });
+    }
+
+    /**
+     * Festlegung der Aktionen beim Exportieren eines Themas als ZIP-Archiv. Der Export läuft im Hintergrund,
+     * sein Fortschritt wird in einem {@link ProgressDialog} angezeigt.
+     *
+     * @see TopicExporter
+     * @since 1.0
+     */
+    private void exportSelected() {
+        TreeItem<String> selectedItem = getSelectionModel().getSelectedItem();
+        if (selectedItem == null || selectedItem == getRoot())
+            return;
+        String title = selectedItem.getValue();
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(Constants.BUNDLE.getString("export_topic"));
+        fileChooser.setInitialFileName(FileUtils.normalize(title) + ".zip");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(Constants.BUNDLE
+                .getString("zip_archive"), "*.zip"));
+        File file = fileChooser.showSaveDialog(mainPane.getScene().getWindow());
+        if (file == null)
+            return;
+
+        ProgressDialog dialog = new ProgressDialog(mainPane.getScene().getWindow(),
+                Constants.BUNDLE.getString("export_topic"), title);
+        AsyncTopicTreeController.getInstance().exportTopic(title, file.toPath(), dialog).whenComplete((v, e) -> {
+            dialog.finish();
+            if (e != null) {
+                Logging.log(Level.WARNING, "Thema \"" + title + "\" konnte nicht exportiert werden.", e);
+                dialog.close();
                 new ErrorAlert(e).showAndWait();
             }
         });
+        dialog.show();
     }
 
     /**
@@ -243,14 +333,22 @@ public class TopicTreeView extends TreeView<String> {
             dialog.setHeaderText(Constants.BUNDLE.getString("rename_topic"));
             Optional<String> result = dialog.showAndWait();
             result.ifPresent(title -> {
-                try {
-                    TopicTreeController.getInstance().renameNode(selectedItem.getValue(), title);
-                    selectedItem.setValue(title);
-                    mainPane.setContent(new ContentPane(title, mainPane));
-                } catch (IOException | TransformerException e) {
-                    Logging.log(Level.WARNING, "Knoten umbenennen fehlgeschlagen!", e);
-                    new WarningAlert().showAndWait();
-                }
+                // Der Ordner wird nur zwischen Dateisystemen kopiert, sonst schließt der Dialog sofort wieder
+                ProgressDialog progressDialog = new ProgressDialog(mainPane.getScene().getWindow(),
+                        Constants.BUNDLE.getString("rename_topic"), title);
+                AsyncTopicTreeController.getInstance().renameNode(selectedItem.getValue(), title, progressDialog)
+                        .whenComplete((v, e) -> {
+                            progressDialog.finish();
+                            progressDialog.close();
+                            if (e != null) {
+                                Logging.log(Level.WARNING, "Knoten umbenennen fehlgeschlagen!", e);
+                                new WarningAlert().showAndWait();
+                                return;
+                            }
+                            selectedItem.setValue(title);
+                            mainPane.setContent(new ContentPane(title, mainPane));
+                        });
+                progressDialog.show();
             });
 
     }
@@ -280,14 +378,16 @@ public class TopicTreeView extends TreeView<String> {
             Optional<ButtonType> result = alert.showAndWait();
 
             if (result.isPresent() && result.get() == ButtonType.YES) {
-                try {
+                AsyncTopicTreeController.getInstance().removeNode(selectedItem.getValue()).whenComplete((v, e) -> {
+                    if (e != null) {
+                        Logging.log(Level.WARNING, "Knoten löschen fehlgeschlagen!", e);
+                        new WarningAlert().showAndWait();
+                        return;
+                    }
+                    if (getSelectionModel().getSelectedItem() == selectedItem)
+                        getSelectionModel().select(null);
                     selectedItem.getParent().getChildren().remove(selectedItem);
-                    TopicTreeController.getInstance().removeNode(selectedItem.getValue());
-                    getSelectionModel().select(null);
-                } catch (IOException | TransformerException e) {
-                    Logging.log(Level.WARNING, "Knoten löschen fehlgeschlagen!", e);
-                    new WarningAlert().showAndWait();
-                }
+                });
             }
 
     }
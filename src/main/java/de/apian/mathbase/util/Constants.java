@@ -56,6 +56,83 @@ public class Constants {
      */
     public static final Color ACCENT_COLOR = Color.rgb(29, 105, 224);
 
+    /**
+     * Ob Änderungen am Themenbaum verzögert im Hintergrund gespeichert werden.
+     * Andernfalls wird nach jeder Änderung sofort und synchron gespeichert.
+     *
+     * @since 1.0
+     */
+    public static final boolean WRITE_BEHIND = true;
+
+    /**
+     * Ruhezeit nach der letzten Änderung in Millisekunden, bevor im Hintergrund gespeichert wird.
+     *
+     * @since 1.0
+     */
+    public static final long SAVE_DELAY = 1000;
+
+    /**
+     * Maximale Zeit in Millisekunden, die eine Änderung ungespeichert bleiben darf.
+     *
+     * @since 1.0
+     */
+    public static final long MAX_SAVE_DELAY = 5000;
+
+    /**
+     * Maximale Anzahl der Dateien, die gleichzeitig kopiert werden, z.B. beim Importieren eines Ordners.
+     *
+     * @since 1.0
+     */
+    public static final int COPY_THREADS = 4;
+
+    /**
+     * Ob der Themenbaum aufgeteilt in eine Datei pro Thema der obersten Ebene gespeichert wird.
+     * Eine Änderung schreibt dann nur noch die Datei des betroffenen Themas neu.
+     * Die Umstellung in beide Richtungen erfolgt automatisch beim nächsten Speichern.
+     *
+     * @since 1.0
+     */
+    public static final boolean SHARDED_STORAGE = false;
+
+    /**
+     * Ob die Dateien der Inhalte nach ihrer Prüfsumme abgelegt werden, sodass gleiche Dateien in mehreren Themen nur
+     * einmal Platz belegen. Die Ordner der Themen enthalten dann nur harte Verknüpfungen, weshalb Dateien dort nicht
+     * direkt bearbeitet werden sollten. Erfordert ein Dateisystem mit harten Verknüpfungen, sonst wird wie bisher
+     * kopiert.
+     *
+     * @since 1.0
+     */
+    public static final boolean DEDUPLICATED_STORAGE = false;
+
+    /**
+     * Zeit in Millisekunden, die entfernte Themen und Inhalte im Papierkorb verbleiben, bevor sie im Hintergrund
+     * endgültig gelöscht werden. Bis dahin können sie von Hand zurückgeholt werden.
+     *
+     * @since 1.0
+     */
+    public static final long TRASH_DELAY = 60000;
+
+    /**
+     * Anzahl der aufzubewahrenden Sicherungen des Themenbaums.
+     *
+     * @since 1.0
+     */
+    public static final int BACKUP_COUNT = 10;
+
+    /**
+     * Anzahl an Änderungen, nach der eine neue Sicherung des Themenbaums angelegt wird.
+     *
+     * @since 1.0
+     */
+    public static final int BACKUP_CHANGES = 50;
+
+    /**
+     * Zeit in Millisekunden, nach der bei vorhandenen Änderungen eine neue Sicherung angelegt wird.
+     *
+     * @since 1.0
+     */
+    public static final long BACKUP_INTERVAL = 10 * 60 * 1000;
+
     /**
      * Resource-Bundle für die GUI-Texte.
      */
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kopieren kompletter Verzeichnisse mit mehreren Dateien gleichzeitig.
+ * <p>
+ * Zuerst werden alle Verzeichnisse angelegt, danach werden die Dateien auf einer begrenzten Anzahl an Threads kopiert.
+ * Große Dateien werden dabei direkt von Kanal zu Kanal übertragen, was dem Betriebssystem das Kopieren ohne Umweg über
+ * den Java-Heap erlaubt. Nach jeder Datei wird geprüft, ob die Kopie so groß ist wie das Original.
+ * <p>
+ * Da der Fortschritt über alle Dateien gezählt wird, ist für jeden Kopiervorgang ein eigenes Objekt zu verwenden.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class CopyEngine {
+
+    /**
+     * Größe in Bytes, ab der eine Datei von Kanal zu Kanal übertragen wird
+     *
+     * @since 1.0
+     */
+    private static final long TRANSFER_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Größe der Stücke in Bytes, in denen große Dateien übertragen werden; nach jedem wird Fortschritt gemeldet
+     *
+     * @since 1.0
+     */
+    private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+
+    /**
+     * Maximale Anzahl gleichzeitig kopierter Dateien
+     *
+     * @since 1.0
+     */
+    private final int threads;
+
+    /**
+     * Empfänger des Fortschritts oder {@code null}
+     *
+     * @since 1.0
+     */
+    private final ProgressListener listener;
+
+    /**
+     * Gesamtgröße aller Dateien und Größe der bereits kopierten in Bytes
+     *
+     * @since 1.0
+     */
+    private long totalBytes, doneBytes;
+
+    /**
+     * Anzahl aller Dateien und der bereits kopierten
+     *
+     * @since 1.0
+     */
+    private int totalFiles, doneFiles;
+
+    /**
+     * Konstruktion eines Kopiervorgangs
+     *
+     * @param threads  Maximale Anzahl gleichzeitig kopierter Dateien
+     * @param listener Empfänger des Fortschritts oder {@code null}
+     * @since 1.0
+     */
+    public CopyEngine(int threads, ProgressListener listener) {
+        this.threads = threads;
+        this.listener = listener;
+    }
+
+    /**
+     * Kopieren eines kompletten Verzeichnisses oder einer einzelnen Datei. Bereits vorhandene Dateien werden ersetzt.
+     * Schlägt eine Datei fehl, werden die noch nicht begonnenen nicht mehr kopiert und die laufenden abgewartet.
+     *
+     * @param from Urpfad
+     * @param to   Zielpfad
+     * @throws IOException wenn das Kopieren fehlschlägt
+     * @since 1.0
+     */
+    public void copy(Path from, Path to) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attr) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attr) {
+                files.add(file);
+                totalBytes += attr.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        totalFiles = files.size();
+
+        // Eine einzelne Datei lohnt keinen eigenen Thread
+        if (files.size() <= 1 || threads <= 1) {
+            for (Path file : files)
+                copyFile(file, to.resolve(from.relativize(file)));
+            return;
+        }
+
+        try (ParallelTasks tasks = new ParallelTasks("Kopieren", Math.min(files.size(), threads))) {
+            for (Path file : files)
+                tasks.submit(() -> copyFile(file, to.resolve(from.relativize(file))));
+            tasks.await();
+        }
+    }
+
+    /**
+     * Kopieren einer einzelnen Datei samt Prüfung ihrer Größe
+     *
+     * @param from Urpfad
+     * @param to   Zielpfad
+     * @throws IOException wenn das Kopieren fehlschlägt oder die Kopie eine andere Größe hat
+     * @since 1.0
+     */
+    private void copyFile(Path from, Path to) throws IOException {
+        long size;
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ)) {
+            size = in.size();
+            if (size < TRANSFER_THRESHOLD) {
+                Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+                report(size, true);
+            } else {
+                try (FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    // transferTo darf weniger als verlangt übertragen, daher bis zum Ende wiederholen
+                    for (long position = 0; position < size; ) {
+                        long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), out);
+                        if (transferred <= 0)
+                            break;
+                        position += transferred;
+                        report(transferred, position == size);
+                    }
+                }
+            }
+        }
+
+        long copied = Files.size(to);
+        if (copied != size)
+            throw new IOException("Kopie \"" + to + "\" hat " + copied + " statt " + size + " Bytes!");
+    }
+
+    /**
+     * Melden des Fortschritts
+     *
+     * @param bytes    Seit der letzten Meldung kopierte Bytes
+     * @param finished Ob damit eine Datei fertig kopiert ist
+     * @since 1.0
+     */
+    private synchronized void report(long bytes, boolean finished) {
+        doneBytes += bytes;
+        if (finished)
+            doneFiles++;
+        if (listener != null)
+            listener.progress(doneBytes, totalBytes, doneFiles, totalFiles);
+    }
+}
@@ -7,10 +7,19 @@
 package de.apian.mathbase.util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.Normalizer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * Nützlichkeiten für Dateioperationen
@@ -22,25 +31,113 @@ import java.text.Normalizer;
  */
 public class FileUtils {
 
+    /**
+     * In normalisierten Namen nicht erlaubte Zeichen
+     *
+     * @since 1.0
+     */
+    private static final Pattern ILLEGAL_CHARACTERS = Pattern.compile("[^a-z_0-9.\\-]");
+
+    /**
+     * Ersetzungen aller Zeichen des lateinischen Schriftsystems bis einschließlich Latin Extended-B, die beim Laden
+     * der Klasse aus {@link #transliterate(String)} ermittelt werden
+     *
+     * @since 1.0
+     */
+    private static final String[] TRANSLITERATIONS = new String[0x0250];
+
+    static {
+        for (char c = 0; c < TRANSLITERATIONS.length; c++)
+            TRANSLITERATIONS[c] = transliterate(String.valueOf(c));
+    }
+
+    /**
+     * Maximale Anzahl zwischengespeicherter normalisierter Namen
+     *
+     * @since 1.0
+     */
+    private static final int MAX_NORMALIZED = 4096;
+
+    /**
+     * Bereits normalisierte Namen
+     *
+     * @since 1.0
+     */
+    private static final Map<String, String> NORMALIZED = new ConcurrentHashMap<>();
+
     private FileUtils() {
     }
 
     /**
-     * Normalisierung eines beliebigen {@code String} zu einem unseren Standards entsprechenden Datei-/Ordnernamen
+     * Normalisierung eines beliebigen {@code String} zu einem unseren Standards entsprechenden Datei-/Ordnernamen.
+     * <p>
+     * Der {@code String} wird in einem Durchlauf Zeichen für Zeichen über eine Tabelle ersetzt, nur seltene Zeichen
+     * außerhalb der Tabelle werden einzeln über {@link #transliterate(String)} normalisiert. Das Ergebnis wird
+     * zwischengespeichert, da dieselben Titel immer wieder normalisiert werden.
      *
      * @param s Ausgangs-{@code String}
      * @return Normalisierter {@code String}
      * @since 1.0
      */
     public static String normalize(String s) {
+        String normalized = NORMALIZED.get(s);
+        if (normalized == null) {
+            normalized = normalizeLowerCase(s.toLowerCase());
+            if (NORMALIZED.size() >= MAX_NORMALIZED)
+                NORMALIZED.clear();
+            NORMALIZED.put(s, normalized);
+        }
+        return normalized;
+    }
+
+    /**
+     * Ersetzen aller Zeichen eines bereits kleingeschriebenen {@code String}. Besteht er nur aus erlaubten Zeichen,
+     * wird er unverändert zurückgegeben.
+     *
+     * @param s Kleingeschriebener {@code String}
+     * @return Normalisierter {@code String}
+     * @since 1.0
+     */
+    private static String normalizeLowerCase(String s) {
+        StringBuilder builder = null;
+        for (int i = 0, length; i < s.length(); i += length) {
+            char c = s.charAt(i);
+            String replacement;
+            if (c < TRANSLITERATIONS.length) {
+                length = 1;
+                replacement = TRANSLITERATIONS[c];
+            } else {
+                length = Character.charCount(s.codePointAt(i));
+                replacement = transliterate(s.substring(i, i + length));
+            }
+
+            if (builder == null) {
+                if (replacement.length() == 1 && replacement.charAt(0) == c)
+                    continue;
+                builder = new StringBuilder(s.length() + 8).append(s, 0, i);
+            }
+            builder.append(replacement);
+        }
+        return builder == null ? s : builder.toString();
+    }
+
+    /**
+     * Ursprüngliche Normalisierung eines bereits kleingeschriebenen {@code String}, nach der auch die Tabelle
+     * {@link #TRANSLITERATIONS} erstellt wird. Bestehende Namen von Ordnern und Dateien bleiben dadurch gleich.
+     *
+     * @param s Kleingeschriebener {@code String}
+     * @return Normalisierter {@code String}
+     * @since 1.0
+     */
+    private static String transliterate(String s) {
         // Ersetzung der Leerzeichen und Umlaute
-        s = s.toLowerCase().replace(" ", "_")
+        s = s.replace(" ", "_")
                 .replace("ä", "ae")
                 .replace("ö", "oe")
                 .replace("ü", "ue")
                 .replace("ß", "ss");
         // Entfernung aller Sonderzeichen, Akzente etc.
-        return Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("[^a-z_0-9.\\-]", "");
+        return ILLEGAL_CHARACTERS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
     }
 
     /**
@@ -49,10 +146,34 @@ public class FileUtils {
      * @param from Urpfad
      * @param to   Zielpfad
      * @throws IOException wenn das Verschieben fehlschlägt
+     * @see #move(Path, Path, ProgressListener)
      * @since 1.0
      */
     public static void move(Path from, Path to) throws IOException {
-        copy(from, to);
+        move(from, to, null);
+    }
+
+    /**
+     * Verschieben eines kompletten Verzeichnisses.
+     * <p>
+     * Liegen Ur- und Zielpfad auf demselben Dateisystem, wird das Verzeichnis in einem Schritt umbenannt, unabhängig
+     * von seiner Größe. Nur zwischen verschiedenen Dateisystemen oder in ein bereits befülltes Verzeichnis hinein wird
+     * kopiert und danach gelöscht.
+     *
+     * @param from     Urpfad
+     * @param to       Zielpfad
+     * @param listener Empfänger des Fortschritts beim Kopieren in Bytes oder {@code null}
+     * @throws IOException wenn das Verschieben fehlschlägt
+     * @since 1.0
+     */
+    public static void move(Path from, Path to, ProgressListener listener) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        } catch (AtomicMoveNotSupportedException | DirectoryNotEmptyException e) {
+            // Anderes Dateisystem oder Zusammenführen mit vorhandenem Verzeichnis, Umbenennen nicht möglich
+        }
+        copy(from, to, listener);
         delete(from);
     }
 
@@ -65,7 +186,21 @@ public class FileUtils {
      * @since 1.0
      */
     public static void copy(Path from, Path to) throws IOException {
-        Files.walkFileTree(from, new CopyFileVisitor(from, to));
+        copy(from, to, null);
+    }
+
+    /**
+     * Kopieren eines kompletten Verzeichnisses mit mehreren Dateien gleichzeitig und Angabe des Fortschritts
+     *
+     * @param from     Urpfad
+     * @param to       Zielpfad
+     * @param listener Empfänger des Fortschritts in Bytes oder {@code null}
+     * @throws IOException wenn das Kopieren fehlschlägt
+     * @see CopyEngine
+     * @since 1.0
+     */
+    public static void copy(Path from, Path to, ProgressListener listener) throws IOException {
+        new CopyEngine(Constants.COPY_THREADS, listener).copy(from, to);
     }
 
     /**
@@ -79,6 +214,55 @@ public class FileUtils {
         Files.walkFileTree(path, new DeleteFileVisitor());
     }
 
+    /**
+     * Atomares Ersetzen des Inhalts einer Datei.
+     * <p>
+     * Die Daten werden zuerst in eine temporäre Datei daneben geschrieben, auf die Platte gezwungen und diese dann
+     * in einem Schritt an die Stelle der Zieldatei verschoben. Die Zieldatei enthält damit zu jedem Zeitpunkt entweder
+     * den alten oder den neuen Inhalt, aber nie einen halb geschriebenen.
+     *
+     * @param path Pfad der Zieldatei
+     * @param data Neuer Inhalt
+     * @throws IOException wenn das Schreiben fehlschlägt; die Zieldatei bleibt dann unverändert
+     * @since 1.0
+     */
+    public static void writeAtomically(Path path, byte[] data) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Nicht jedes Dateisystem kann atomar verschieben; dann zumindest in einem Schritt ersetzen
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e1) {
+                e.addSuppressed(e1);
+            }
+            throw e;
+        }
+
+        // Auch die Umbenennung selbst auf die Platte zwingen; geht nicht auf jedem Betriebssystem
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // Unkritisch, die Datei selbst ist bereits vollständig geschrieben
+            }
+        }
+    }
+
     /**
      * Herausfiltern einer Dateiendung
      *
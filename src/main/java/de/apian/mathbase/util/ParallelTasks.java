@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Gleichzeitiges Ausführen mehrerer voneinander unabhängiger Operationen auf Ordnern und Dateien auf einer begrenzten
+ * Anzahl an Threads.
+ * <p>
+ * Schlägt eine Operation fehl, werden die noch nicht begonnenen nicht mehr ausgeführt und die laufenden abgewartet.
+ * Die erste Ausnahme wird weitergeworfen, alle weiteren werden an sie angehängt. Nach {@link #close()} läuft keine
+ * der Operationen mehr, sodass sich danach z.B. ein Ordner gefahrlos wieder löschen lässt.
+ * <pre>{@code
+ * try (ParallelTasks tasks = new ParallelTasks("Kopieren", Constants.COPY_THREADS)) {
+ *     for (Path file : files)
+ *         tasks.submit(() -> copyFile(file));
+ *     tasks.await();
+ * }
+ * }</pre>
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class ParallelTasks implements AutoCloseable {
+
+    /**
+     * Operation auf Ordnern und Dateien
+     *
+     * @since 1.0
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws IOException;
+    }
+
+    /**
+     * Bezeichnung der Arbeit für Thread-Namen und Meldungen, z.B. "Kopieren"
+     *
+     * @since 1.0
+     */
+    private final String name;
+
+    /**
+     * Threads, auf denen die Operationen laufen
+     *
+     * @since 1.0
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Ergebnisse aller bisher übergebenen Operationen
+     *
+     * @since 1.0
+     */
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    /**
+     * Ob noch nicht begonnene Operationen übersprungen werden sollen. Laufende Operationen werden nie abgebrochen,
+     * damit nach {@link #close()} sicher keine mehr läuft.
+     *
+     * @since 1.0
+     */
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    /**
+     * Konstruktion einer leeren Menge an Operationen
+     *
+     * @param name    Bezeichnung der Arbeit für Thread-Namen und Meldungen, z.B. "Kopieren"
+     * @param threads Maximale Anzahl gleichzeitig laufender Operationen
+     * @since 1.0
+     */
+    public ParallelTasks(String name, int threads) {
+        this.name = name;
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), daemonThreads(name));
+    }
+
+    /**
+     * Erzeugen von Hintergrund-Threads, die das Beenden des Programms nicht aufhalten
+     *
+     * @param name Bezeichnung der Arbeit; die Threads heißen dann "Mathbase-" und diese Bezeichnung
+     * @return Erzeuger der Threads
+     * @since 1.0
+     */
+    public static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "Mathbase-" + name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Übergeben einer Operation, die sofort beginnt, sobald ein Thread frei ist
+     *
+     * @param task Operation
+     * @since 1.0
+     */
+    public void submit(Task task) {
+        futures.add(executor.submit(() -> {
+            if (cancelled.get())
+                return null;
+            try {
+                task.run();
+            } catch (IOException | RuntimeException | Error e) {
+                // Sofort, nicht erst wenn await() bei dieser Operation angekommen ist
+                cancelled.set(true);
+                throw e;
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Abwarten aller bisher übergebenen Operationen
+     *
+     * @throws IOException wenn eine der Operationen fehlgeschlagen ist
+     * @since 1.0
+     */
+    public void await() throws IOException {
+        IOException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                // Übersprungene Operationen sind sofort fertig, laufende werden vollständig abgewartet
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                    cancelled.set(true);
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled.set(true);
+                throw new InterruptedIOException(name + " wurde unterbrochen");
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Verwerfen aller noch nicht begonnenen Operationen und Abwarten der laufenden. Es wird ohne Zeitbegrenzung
+     * gewartet, auch wenn der aufrufende Thread unterbrochen wird; die Unterbrechung bleibt danach erhalten.
+     *
+     * @since 1.0
+     */
+    @Override
+    public void close() {
+        cancelled.set(true);
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES))
+                    break;
+                Logging.log(Level.WARNING, name + ": Warten auf laufende Operationen dauert an");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.util;
+
+/**
+ * Empfänger des Fortschritts einer länger laufenden Arbeit, z.B. eines Exports.
+ * <p>
+ * Wird in der Regel aus einem Hintergrund-Thread aufgerufen; Änderungen an der Oberfläche müssen daher
+ * über {@code Platform.runLater} erfolgen.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Mitteilen des aktuellen Fortschritts
+     *
+     * @param done  Bereits erledigte Menge, z.B. geschriebene Bytes
+     * @param total Gesamte Menge
+     * @since 1.0
+     */
+    void progress(long done, long total);
+
+    /**
+     * Mitteilen des aktuellen Fortschritts einer Arbeit an mehreren Dateien, z.B. beim Kopieren eines Verzeichnisses.
+     * Ohne Überschreiben wird nur die Menge an Bytes weitergegeben.
+     *
+     * @param done       Bereits erledigte Bytes
+     * @param total      Gesamte Bytes
+     * @param filesDone  Bereits erledigte Dateien
+     * @param filesTotal Gesamte Dateien
+     * @since 1.0
+     */
+    default void progress(long done, long total, int filesDone, int filesTotal) {
+        progress(done, total);
+    }
+}
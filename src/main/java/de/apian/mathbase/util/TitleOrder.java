@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.util;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Einheitliche Sortierung der Titel von Themen im Themenbaum und in der Oberfläche.
+ * <p>
+ * Sortiert wird nach deutschen Regeln: Groß- und Kleinschreibung spielt keine Rolle, Umlaute stehen bei ihrem
+ * Grundbuchstaben, also "Ärger" zwischen "Apfel" und "Birne". Da ein solcher Vergleich deutlich teurer ist als ein
+ * einfacher Vergleich von Zeichenketten, wird zu jedem Titel einmal ein {@link CollationKey} erzeugt, der sich danach
+ * schnell mit anderen vergleichen lässt.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class TitleOrder {
+
+    /**
+     * Vergleicher nach deutschen Regeln, der nur Buchstaben und Akzente unterscheidet
+     *
+     * @since 1.0
+     */
+    private static final Collator COLLATOR = Collator.getInstance(Locale.GERMAN);
+
+    static {
+        COLLATOR.setStrength(Collator.SECONDARY);
+        COLLATOR.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+    }
+
+    private TitleOrder() {
+    }
+
+    /**
+     * Erzeugen des Sortierschlüssels eines Titels
+     *
+     * @param title Titel
+     * @return Sortierschlüssel
+     * @since 1.0
+     */
+    public static CollationKey keyOf(String title) {
+        // Ein Collator darf nicht von mehreren Threads gleichzeitig benutzt werden
+        synchronized (COLLATOR) {
+            return COLLATOR.getCollationKey(title);
+        }
+    }
+
+    /**
+     * Binäre Suche der Stelle, an der ein Eintrag in eine sortierte Liste eingefügt werden muss. Bei gleichen
+     * Schlüsseln wird vor den vorhandenen Einträgen eingefügt.
+     *
+     * @param list  Nach Titeln sortierte Liste
+     * @param key   Sortierschlüssel des einzufügenden Eintrags
+     * @param keyOf Ermitteln des Sortierschlüssels eines vorhandenen Eintrags
+     * @param <T>   Typ der Einträge
+     * @return Position, an der der Eintrag einzufügen ist
+     * @since 1.0
+     */
+    public static <T> int insertionIndex(List<? extends T> list, CollationKey key, Function<T, CollationKey> keyOf) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keyOf.apply(list.get(middle)).compareTo(key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
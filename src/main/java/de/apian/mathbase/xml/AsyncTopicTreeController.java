@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.ParallelTasks;
+import de.apian.mathbase.util.ProgressListener;
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Asynchrone Fassade des {@link TopicTreeController}s für die Oberfläche.
+ * <p>
+ * Jede Operation mit Zugriff auf die Platte läuft auf einem eigenen Executor, sodass der aufrufende Thread, in der
+ * Regel der JavaFX-Application-Thread, nie blockiert. Zurückgegeben wird eine {@link CompletableFuture}, die auf dem
+ * Rückruf-Executor abgeschlossen wird, bei {@link #getInstance()} also auf dem JavaFX-Application-Thread. Daran
+ * gehängte Aktionen wie {@code whenComplete} dürfen die Oberfläche somit direkt verändern.
+ * <p>
+ * Änderungen am Themenbaum werden in der Reihenfolge ihres Aufrufs ausgeführt, damit z.B. ein gerade erst
+ * hinzugefügtes Thema sofort umbenannt werden kann. Auch der Export reiht sich dort ein, da er die Ordner der Themen
+ * liest, die sich währenddessen nicht ändern dürfen.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @see TopicTreeController
+ * @since 1.0
+ */
+public class AsyncTopicTreeController {
+
+    /**
+     * Operation mit Zugriff auf die Platte
+     *
+     * @param <T> Typ des Ergebnisses
+     * @since 1.0
+     */
+    @FunctionalInterface
+    public interface Task<T> {
+        T call() throws TitleCollisionException, IOException;
+    }
+
+    /**
+     * Einzigste Instanz für die Oberfläche
+     *
+     * @since 1.0
+     */
+    private static volatile AsyncTopicTreeController instance;
+
+    /**
+     * Executor, auf dem die Operationen laufen
+     *
+     * @since 1.0
+     */
+    private final ExecutorService executor = newExecutor();
+
+    /**
+     * Kontrolleur, dessen Operationen ausgeführt werden
+     *
+     * @since 1.0
+     */
+    private final TopicTreeController controller;
+
+    /**
+     * Executor, auf dem die Ergebnisse zurückgegeben werden
+     *
+     * @since 1.0
+     */
+    private final Executor callbackExecutor;
+
+    /**
+     * Abschluss der zuletzt aufgerufenen Änderung, an den die nächste angehängt wird
+     *
+     * @since 1.0
+     */
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+    /**
+     * Konstruktion der Fassade
+     *
+     * @param controller       Kontrolleur, dessen Operationen ausgeführt werden
+     * @param callbackExecutor Executor, auf dem die Ergebnisse zurückgegeben werden
+     * @since 1.0
+     */
+    public AsyncTopicTreeController(TopicTreeController controller, Executor callbackExecutor) {
+        this.controller = controller;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Instanz für die Oberfläche, deren Ergebnisse auf dem JavaFX-Application-Thread zurückgegeben werden
+     *
+     * @return Einzigste Instanz
+     * @since 1.0
+     */
+    public static AsyncTopicTreeController getInstance() {
+        AsyncTopicTreeController result = instance;
+        if (result == null) {
+            synchronized (AsyncTopicTreeController.class) {
+                result = instance;
+                if (result == null)
+                    instance = result = new AsyncTopicTreeController(TopicTreeController.getInstance(),
+                            Platform::runLater);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Erzeugen des Executors. Ab Java 21 wird für jede Operation ein virtueller Thread gestartet, der beim Warten auf
+     * die Platte keinen Thread des Betriebssystems belegt, sonst ein wiederverwendbarer Hintergrund-Thread.
+     *
+     * @return Executor
+     * @since 1.0
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(ParallelTasks.daemonThreads("Async"));
+        }
+    }
+
+    /**
+     * Ausführen einer Änderung nach allen zuvor aufgerufenen Änderungen
+     *
+     * @param task Operation
+     * @param <T>  Typ des Ergebnisses
+     * @return Ergebnis, das auf dem Rückruf-Executor abgeschlossen wird
+     * @since 1.0
+     */
+    public synchronized <T> CompletableFuture<T> submit(Task<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        tail = tail.thenRunAsync(() -> run(task, result), executor);
+        return result;
+    }
+
+    /**
+     * Ausführen einer Operation und Weitergeben ihres Ergebnisses bzw. ihrer Ausnahme an den Rückruf-Executor.
+     * Auch unerwartete Fehler schließen das Ergebnis ab, damit niemand vergeblich darauf wartet.
+     *
+     * @param task   Operation
+     * @param result Ergebnis
+     * @param <T>    Typ des Ergebnisses
+     * @since 1.0
+     */
+    private <T> void run(Task<T> task, CompletableFuture<T> result) {
+        try {
+            T value = task.call();
+            callbackExecutor.execute(() -> result.complete(value));
+        } catch (Throwable t) {
+            callbackExecutor.execute(() -> result.completeExceptionally(t));
+        }
+    }
+
+    /**
+     * @see TopicTreeController#addNode(String, String)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> addNode(String title, String parent) {
+        return submit(() -> {
+            controller.addNode(title, parent);
+            return null;
+        });
+    }
+
+    /**
+     * @see TopicTreeController#moveNode(String, String)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> moveNode(String from, String to) {
+        return submit(() -> {
+            controller.moveNode(from, to);
+            return null;
+        });
+    }
+
+    /**
+     * Verschieben eines Themas mit Meldung des Fortschritts, falls dessen Ordner zwischen Dateisystemen kopiert
+     * werden muss
+     *
+     * @param listener Empfänger des Fortschritts
+     * @see TopicTreeController#moveNode(String, String)
+     * @see TopicTreeTransaction#setProgressListener(ProgressListener)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> moveNode(String from, String to, ProgressListener listener) {
+        return submit(() -> {
+            controller.beginTransaction().moveNode(from, to).setProgressListener(listener).commit();
+            return null;
+        });
+    }
+
+    /**
+     * @see TopicTreeController#removeNode(String)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> removeNode(String title) {
+        return submit(() -> {
+            controller.removeNode(title);
+            return null;
+        });
+    }
+
+    /**
+     * @see TopicTreeController#renameNode(String, String)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> renameNode(String from, String to) {
+        return submit(() -> {
+            controller.renameNode(from, to);
+            return null;
+        });
+    }
+
+    /**
+     * Umbenennen eines Themas mit Meldung des Fortschritts, falls dessen Ordner zwischen Dateisystemen kopiert
+     * werden muss
+     *
+     * @param listener Empfänger des Fortschritts
+     * @see TopicTreeController#renameNode(String, String)
+     * @see TopicTreeTransaction#setProgressListener(ProgressListener)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> renameNode(String from, String to, ProgressListener listener) {
+        return submit(() -> {
+            controller.beginTransaction().renameNode(from, to).setProgressListener(listener).commit();
+            return null;
+        });
+    }
+
+    /**
+     * @see TopicTreeController#addContent(Content, String)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> addContent(Content content, String parent) {
+        return submit(() -> {
+            controller.addContent(content, parent);
+            return null;
+        });
+    }
+
+    /**
+     * @see TopicTreeController#renameContent(Content, String, String)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> renameContent(Content content, String parent, String caption) {
+        return submit(() -> {
+            controller.renameContent(content, parent, caption);
+            return null;
+        });
+    }
+
+    /**
+     * @see TopicTreeController#removeContent(Content, String)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> removeContent(Content content, String parent) {
+        return submit(() -> {
+            controller.removeContent(content, parent);
+            return null;
+        });
+    }
+
+    /**
+     * @see TopicTreeController#swapContents(Content, Content, String)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> swapContents(Content c1, Content c2, String parent) {
+        return submit(() -> {
+            controller.swapContents(c1, c2, parent);
+            return null;
+        });
+    }
+
+    /**
+     * @see TopicTreeTransaction#commit()
+     * @since 1.0
+     */
+    public CompletableFuture<Void> commit(TopicTreeTransaction transaction) {
+        return submit(() -> {
+            transaction.commit();
+            return null;
+        });
+    }
+
+    /**
+     * @return Titel des neuen Themas
+     * @see TopicImporter#importDirectory(Path, String)
+     * @since 1.0
+     */
+    public CompletableFuture<String> importDirectory(Path source, String parent) {
+        return submit(() -> new TopicImporter(controller).importDirectory(source, parent));
+    }
+
+    /**
+     * @return Titel des neuen Themas
+     * @see TopicImporter#importArchive(Path, String)
+     * @since 1.0
+     */
+    public CompletableFuture<String> importArchive(Path archive, String parent) {
+        return submit(() -> new TopicImporter(controller).importArchive(archive, parent));
+    }
+
+    /**
+     * @see TopicExporter#exportTopic(String, Path, ProgressListener)
+     * @since 1.0
+     */
+    public CompletableFuture<Void> exportTopic(String title, Path target, ProgressListener listener) {
+        return submit(() -> {
+            new TopicExporter(controller).exportTopic(title, target, listener);
+            return null;
+        });
+    }
+}
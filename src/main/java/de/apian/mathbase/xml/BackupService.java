@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.util.ParallelTasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rollierende, komprimierte Sicherungen der XML-Datei im Hintergrund.
+ * <p>
+ * Nach einer bestimmten Anzahl an Änderungen oder nach Ablauf einer bestimmten Zeit wird der aktuelle Stand
+ * des Themenbaums als XML-Datei mit Zeitstempel und gzip-komprimiert im Sicherungsordner abgelegt. Dabei werden nur die
+ * neuesten Sicherungen behalten, alle älteren werden gelöscht.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class BackupService {
+
+    /**
+     * Endung der Sicherungsdateien
+     *
+     * @since 1.0
+     */
+    private static final String EXTENSION = ".xml.gz";
+
+    /**
+     * Format des Zeitstempels im Dateinamen; alphabetisch sortiert ergibt sich die zeitliche Reihenfolge
+     *
+     * @since 1.0
+     */
+    private static final String TIMESTAMP_FORMAT = "yyyyMMdd-HHmmss-SSS";
+
+    /**
+     * Einzelner Hintergrund-Thread, auf dem gesichert wird
+     *
+     * @since 1.0
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(ParallelTasks.daemonThreads("Sichern"));
+
+    /**
+     * Quelle des zu sichernden Inhalts der XML-Datei; wird nur aufgerufen, wenn tatsächlich gesichert wird
+     *
+     * @since 1.0
+     */
+    private final Supplier<byte[]> source;
+
+    /**
+     * Ordner der Sicherungen
+     *
+     * @since 1.0
+     */
+    private final Path directory;
+
+    /**
+     * Beginn jedes Dateinamens
+     *
+     * @since 1.0
+     */
+    private final String prefix;
+
+    /**
+     * Anzahl der aufzubewahrenden Sicherungen
+     *
+     * @since 1.0
+     */
+    private final int count;
+
+    /**
+     * Anzahl der Änderungen, nach der gesichert wird
+     *
+     * @since 1.0
+     */
+    private final int changeThreshold;
+
+    /**
+     * Zeit in Millisekunden, nach der bei vorhandenen Änderungen gesichert wird
+     *
+     * @since 1.0
+     */
+    private final long interval;
+
+    /**
+     * Anzahl der Änderungen seit der letzten Sicherung
+     *
+     * @since 1.0
+     */
+    private int changes;
+
+    /**
+     * Zeitpunkt der letzten Sicherung in Millisekunden; anfangs {@code 0}, damit jede Sitzung
+     * gleich mit der ersten Änderung eine Sicherung anlegt
+     *
+     * @since 1.0
+     */
+    private long lastBackup;
+
+    /**
+     * Konstruktion des Dienstes.
+     *
+     * @param source          Quelle des zu sichernden Inhalts der XML-Datei
+     * @param directory       Ordner der Sicherungen
+     * @param prefix          Beginn jedes Dateinamens
+     * @param count           Anzahl der aufzubewahrenden Sicherungen
+     * @param changeThreshold Anzahl der Änderungen, nach der gesichert wird
+     * @param interval        Zeit in Millisekunden, nach der bei vorhandenen Änderungen gesichert wird
+     * @since 1.0
+     */
+    BackupService(Supplier<byte[]> source, Path directory, String prefix, int count, int changeThreshold,
+                  long interval) {
+        this.source = source;
+        this.directory = directory;
+        this.prefix = prefix;
+        this.count = count;
+        this.changeThreshold = changeThreshold;
+        this.interval = interval;
+    }
+
+    /**
+     * Zählen von Änderungen.
+     *
+     * @param count Anzahl der Änderungen
+     * @since 1.0
+     */
+    synchronized void changed(int count) {
+        changes += count;
+    }
+
+    /**
+     * Mitteilen, dass der Themenbaum gespeichert wurde. Ist eine Sicherung fällig, wird sie im Hintergrund
+     * angelegt.
+     *
+     * @since 1.0
+     */
+    synchronized void saved() {
+        if (changes == 0 || executor.isShutdown())
+            return;
+
+        long now = System.currentTimeMillis();
+        if (changes >= changeThreshold || now - lastBackup >= interval) {
+            changes = 0;
+            lastBackup = now;
+            executor.execute(() -> backup(source.get()));
+        }
+    }
+
+    /**
+     * Beenden des Dienstes. Ein noch nicht gesicherter Stand wird vorher noch gesichert
+     * und laufende Sicherungen werden abgewartet.
+     *
+     * @since 1.0
+     */
+    void close() {
+        synchronized (this) {
+            if (changes > 0 && !executor.isShutdown()) {
+                changes = 0;
+                executor.execute(() -> backup(source.get()));
+            }
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS))
+                Logging.log(Level.WARNING, "Sicherung wurde nicht rechtzeitig abgeschlossen");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Anlegen einer Sicherung und Löschen der überzähligen alten Sicherungen.
+     *
+     * @param data Zu sichernder Inhalt der XML-Datei
+     * @since 1.0
+     */
+    private void backup(byte[] data) {
+        Path file = directory.resolve(prefix + new SimpleDateFormat(TIMESTAMP_FORMAT).format(new Date()) + EXTENSION);
+        try {
+            Files.createDirectories(directory);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+            try (OutputStream out = new GZIPOutputStream(bytes)) {
+                out.write(data);
+            }
+            FileUtils.writeAtomically(file, bytes.toByteArray());
+            Logging.log(Level.INFO, "Sicherung \"" + file + "\" erfolgreich erstellt");
+
+            List<Path> backups = list();
+            for (Path old : backups.subList(Math.min(count, backups.size()), backups.size())) {
+                Files.delete(old);
+                Logging.log(Level.INFO, "Alte Sicherung \"" + old + "\" gelöscht");
+            }
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "Fehler beim Erstellen der Sicherung \"" + file + "\"", e);
+        }
+    }
+
+    /**
+     * Auflisten aller vorhandenen Sicherungen.
+     *
+     * @return Pfade der Sicherungen, die neueste zuerst
+     * @throws IOException wenn der Sicherungsordner nicht gelesen werden konnte
+     * @since 1.0
+     */
+    List<Path> list() throws IOException {
+        List<Path> backups = new ArrayList<>();
+        if (!Files.isDirectory(directory))
+            return backups;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + EXTENSION)) {
+            for (Path path : stream)
+                backups.add(path);
+        }
+        backups.sort(Collections.reverseOrder());
+        return backups;
+    }
+
+    /**
+     * Lesen einer Sicherung.
+     *
+     * @param backup Pfad der Sicherung
+     * @return Unkomprimierter Inhalt der gesicherten XML-Datei
+     * @throws IOException wenn die Sicherung nicht gelesen oder entpackt werden konnte
+     * @since 1.0
+     */
+    static byte[] read(Path backup) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(backup))) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+                bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -144,6 +144,24 @@ public class Content {
             throw new IllegalArgumentException("No enum constant " + Type.class.getCanonicalName() + "." + name);
         }
 
+        /**
+         * Ermitteln des Typs für eine Dateiendung.
+         *
+         * @param extension Dateiendung mit Punkt, siehe {@link de.apian.mathbase.util.FileUtils#getFileExtension}
+         * @return Typ mit dieser Dateiendung oder {@link #OTHER}, falls es keinen gibt
+         * @since 1.0
+         */
+        public static Type forExtension(String extension) {
+            String pattern = "*" + extension;
+            for (Type type : values()) {
+                for (String fileExtension : type.fileExtensions) {
+                    if (fileExtension.equalsIgnoreCase(pattern))
+                        return type;
+                }
+            }
+            return OTHER;
+        }
+
         /**
          * Konvertierung des Typs in eine Zeichenkette.
          *
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+import de.apian.mathbase.util.Logging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+
+/**
+ * Ablage der Dateien aller Inhalte nach ihrer SHA-256-Prüfsumme, sodass gleiche Dateien nur einmal gespeichert werden.
+ * <p>
+ * Jede Datei liegt genau einmal unter ihrer Prüfsumme im Ordner der Ablage. Die Dateien in den Ordnern der Themen
+ * sind harte Verknüpfungen darauf. Die Prüfsumme wird beim Kopieren in die Ablage berechnet, die Datei also nur
+ * einmal gelesen. Ist sie bereits vorhanden, wird die Kopie verworfen und nur eine weitere Verknüpfung angelegt.
+ * <p>
+ * Als Referenzzähler dient die Anzahl der Verknüpfungen, die das Dateisystem ohnehin führt. Fällt sie auf eins,
+ * verweist kein Inhalt mehr auf die Datei und {@link #purge()} löscht sie. Da diese Anzahl nicht auf allen
+ * Dateisystemen abgefragt werden kann, ist die Ablage nur verfügbar, wenn {@link #isSupported()} zutrifft. Lässt
+ * sich eine einzelne Verknüpfung trotzdem nicht anlegen, z.B. weil der Ordner des Themas auf einem anderen
+ * Dateisystem liegt, wird die Datei stattdessen kopiert.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class ContentStore {
+
+    /**
+     * Attribut mit der Anzahl der harten Verknüpfungen einer Datei
+     *
+     * @since 1.0
+     */
+    private static final String ATTR_LINK_COUNT = "unix:nlink";
+
+    /**
+     * Endung unfertiger Kopien im Ordner der Ablage
+     *
+     * @since 1.0
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Ziffern der hexadezimalen Darstellung der Prüfsummen
+     *
+     * @since 1.0
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Ordner der Ablage
+     *
+     * @since 1.0
+     */
+    private final Path directory;
+
+    /**
+     * Konstruktion der Ablage. Überreste abgebrochener Kopien werden dabei gelöscht.
+     *
+     * @param directory Ordner der Ablage
+     * @throws IOException wenn der Ordner nicht angelegt werden konnte
+     * @since 1.0
+     */
+    ContentStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path temp : stream)
+                Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Probeweises Anlegen einer harten Verknüpfung im Ordner der Ablage und Abfragen deren Anzahl. Die Ansicht der
+     * Attribute allein sagt nichts darüber aus, ob das Dateisystem dieses Ordners Verknüpfungen auch zulässt.
+     *
+     * @return ob das Dateisystem harte Verknüpfungen samt deren Anzahl unterstützt
+     * @since 1.0
+     */
+    boolean isSupported() {
+        Path probe = null;
+        Path link = null;
+        try {
+            probe = Files.createTempFile(directory, null, TEMP_SUFFIX);
+            link = probe.resolveSibling(probe.getFileName() + "-link" + TEMP_SUFFIX);
+            Files.createLink(link, probe);
+            return ((Number) Files.getAttribute(probe, ATTR_LINK_COUNT)).intValue() == 2;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            Logging.log(Level.INFO, "Harte Verknüpfungen in \"" + directory + "\" nicht möglich", e);
+            return false;
+        } finally {
+            for (Path path : new Path[]{link, probe}) {
+                try {
+                    if (path != null)
+                        Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    Logging.log(Level.WARNING, "Probedatei \"" + path + "\" konnte nicht gelöscht werden", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hinzufügen einer Datei zur Ablage und Anlegen einer Verknüpfung darauf. Kann die Verknüpfung nicht angelegt
+     * werden, wird die Datei stattdessen kopiert.
+     *
+     * @param from Pfad der hinzuzufügenden Datei
+     * @param to   Pfad der anzulegenden Verknüpfung, z.B. im Ordner eines Themas
+     * @throws IOException wenn die Datei nicht kopiert oder die Verknüpfung nicht angelegt werden konnte
+     * @since 1.0
+     */
+    void link(Path from, Path to) throws IOException {
+        Path temp = Files.createTempFile(directory, null, TEMP_SUFFIX);
+        try {
+            MessageDigest digest = newDigest();
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(from); OutputStream out = Files.newOutputStream(temp)) {
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            Path blob = directory.resolve(toHex(digest.digest()));
+            // Gleichzeitige Kopien derselben Datei dürfen sich nicht gegenseitig ersetzen
+            synchronized (this) {
+                if (Files.exists(blob))
+                    Logging.log(Level.INFO, "Datei \"" + from + "\" bereits als \"" + blob + "\" abgelegt");
+                else
+                    Files.move(temp, blob);
+                try {
+                    Files.createLink(to, blob);
+                    return;
+                } catch (FileAlreadyExistsException e) {
+                    throw e;
+                } catch (FileSystemException | UnsupportedOperationException e) {
+                    Logging.log(Level.WARNING, "Verknüpfung \"" + to + "\" konnte nicht angelegt werden, Datei wird "
+                            + "kopiert", e);
+                }
+            }
+            // Außerhalb der Sperre, die Ursprungsdatei kann im Gegensatz zur abgelegten nicht aufgeräumt werden
+            FileUtils.copy(from, to);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Löschen aller Dateien, auf die kein Inhalt mehr verweist. Fehler beim Löschen einzelner Dateien werden nur
+     * geloggt, da die Datei beim nächsten Mal erneut geprüft wird.
+     *
+     * @since 1.0
+     */
+    synchronized void purge() {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path blob : stream) {
+                if (blob.getFileName().toString().endsWith(TEMP_SUFFIX))
+                    continue;
+                try {
+                    if (((Number) Files.getAttribute(blob, ATTR_LINK_COUNT)).intValue() <= 1) {
+                        Files.delete(blob);
+                        count++;
+                    }
+                } catch (IOException e) {
+                    Logging.log(Level.WARNING, "Abgelegte Datei \"" + blob + "\" konnte nicht gelöscht werden", e);
+                }
+            }
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "Ablage \"" + directory + "\" konnte nicht aufgeräumt werden", e);
+        }
+        if (count > 0)
+            Logging.log(Level.INFO, count + " nicht mehr benötigte Dateien aus der Ablage gelöscht");
+    }
+
+    /**
+     * Hexadezimale Darstellung einer Prüfsumme
+     *
+     * @param hash Prüfsumme
+     * @return Prüfsumme als Zeichenkette aus Kleinbuchstaben und Ziffern
+     * @since 1.0
+     */
+    private static String toHex(byte[] hash) {
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return Neuer SHA-256-Algorithmus
+     * @since 1.0
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Jede Java-Plattform muss SHA-256 unterstützen
+            throw new InternalError(e);
+        }
+    }
+}
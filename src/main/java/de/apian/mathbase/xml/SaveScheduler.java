@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.util.ParallelTasks;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Verzögertes Speichern im Hintergrund ("write-behind").
+ * <p>
+ * Jede Änderung meldet nur noch an, dass gespeichert werden muss. Erst wenn für eine gewisse Zeit keine weitere
+ * Änderung kommt, wird ein einziges Mal im Hintergrund gespeichert; rasch aufeinanderfolgende Änderungen werden so
+ * zusammengefasst. Damit bei Dauerbetrieb trotzdem gespeichert wird, wartet der Planer höchstens eine bestimmte
+ * Maximalzeit seit der ersten ungespeicherten Änderung.
+ * <p>
+ * Schlägt ein Speichervorgang im Hintergrund fehl, bleiben die Änderungen als ungespeichert markiert. Der Fehler wird
+ * bei der nächsten Änderung über {@link #throwFailure()} an den Aufrufer weitergereicht und das Speichern dabei erneut
+ * eingeplant; bis dahin sind die Änderungen durch das {@link TopicTreeJournal} gesichert. Ein {@link #flush()}
+ * versucht es sofort erneut.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class SaveScheduler {
+
+    /**
+     * Eigentliche Speicheraktion.
+     *
+     * @since 1.0
+     */
+    interface SaveAction {
+        /**
+         * Speichern.
+         *
+         * @throws IOException wenn das Speichern fehlgeschlagen ist
+         * @since 1.0
+         */
+        void save() throws IOException;
+    }
+
+    /**
+     * Einzelner Hintergrund-Thread, auf dem gespeichert wird.
+     *
+     * @since 1.0
+     */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            ParallelTasks.daemonThreads("Speichern"));
+
+    /**
+     * Sperre, unter der gespeichert wird, damit sich Hintergrund- und explizites Speichern nie überschneiden.
+     * Da die Speicheraktion selbst die Sperre des Themenbaums nimmt, muss diese Sperre stets <em>vor</em> jener
+     * genommen werden, siehe {@link #getSaveLock()}.
+     *
+     * @since 1.0
+     */
+    private final Object saveLock = new Object();
+
+    /**
+     * Eigentliche Speicheraktion.
+     *
+     * @since 1.0
+     */
+    private final SaveAction action;
+
+    /**
+     * Ruhezeit nach der letzten Änderung in Millisekunden, bevor gespeichert wird.
+     *
+     * @since 1.0
+     */
+    private final long delay;
+
+    /**
+     * Maximale Wartezeit seit der ersten ungespeicherten Änderung in Millisekunden.
+     *
+     * @since 1.0
+     */
+    private final long maxDelay;
+
+    /**
+     * Ob es ungespeicherte Änderungen gibt.
+     *
+     * @since 1.0
+     */
+    private boolean dirty;
+
+    /**
+     * Ob bereits ein Speichervorgang eingeplant ist.
+     *
+     * @since 1.0
+     */
+    private boolean scheduled;
+
+    /**
+     * Zeitpunkte der ersten ungespeicherten und der letzten Änderung in Millisekunden.
+     *
+     * @since 1.0
+     */
+    private long firstRequest, lastRequest;
+
+    /**
+     * Noch nicht gemeldeter Fehler des letzten Speichervorgangs.
+     *
+     * @since 1.0
+     */
+    private IOException failure;
+
+    /**
+     * Konstruktion des Planers.
+     *
+     * @param action   Eigentliche Speicheraktion
+     * @param delay    Ruhezeit nach der letzten Änderung in Millisekunden
+     * @param maxDelay Maximale Wartezeit seit der ersten ungespeicherten Änderung in Millisekunden
+     * @since 1.0
+     */
+    SaveScheduler(SaveAction action, long delay, long maxDelay) {
+        this.action = action;
+        this.delay = delay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Anmelden einer Änderung, die gespeichert werden muss.
+     *
+     * @since 1.0
+     */
+    synchronized void schedule() {
+        long now = System.currentTimeMillis();
+        if (!dirty) {
+            dirty = true;
+            firstRequest = now;
+        }
+        lastRequest = now;
+
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Weiterreichen des Fehlers des letzten Speichervorgangs im Hintergrund, sofern dieser noch nicht gemeldet wurde.
+     * Jeder Fehler wird nur einmal gemeldet, das erneute Speichern wird dabei eingeplant. Muss vor der nächsten
+     * Änderung aufgerufen werden, damit diese bei einem Fehler gar nicht erst ins Journal gelangt.
+     *
+     * @throws IOException wenn der letzte Speichervorgang im Hintergrund fehlgeschlagen ist
+     * @since 1.0
+     */
+    synchronized void throwFailure() throws IOException {
+        if (failure == null)
+            return;
+        IOException cause = failure;
+        failure = null;
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        }
+        throw new IOException("Speichern im Hintergrund fehlgeschlagen", cause);
+    }
+
+    /**
+     * Sofortiges Speichern aller ungespeicherten Änderungen auf dem aufrufenden Thread.
+     * Ein gerade laufender Speichervorgang im Hintergrund wird vorher abgewartet.
+     *
+     * @throws IOException wenn das Speichern oder ein vorheriger Speichervorgang im Hintergrund fehlgeschlagen ist
+     * @since 1.0
+     */
+    void flush() throws IOException {
+        synchronized (saveLock) {
+            synchronized (this) {
+                if (!dirty && failure == null)
+                    return;
+            }
+            saveNow();
+        }
+    }
+
+    /**
+     * Sofortiges Speichern auf dem aufrufenden Thread, auch ohne angemeldete Änderung. Ein gerade laufender
+     * Speichervorgang im Hintergrund wird vorher abgewartet, ein eingeplanter wird damit überflüssig.
+     *
+     * @throws IOException wenn das Speichern fehlgeschlagen ist
+     * @since 1.0
+     */
+    void saveNow() throws IOException {
+        synchronized (saveLock) {
+            synchronized (this) {
+                dirty = false;
+                failure = null;
+            }
+
+            try {
+                action.save();
+            } catch (IOException e) {
+                synchronized (this) {
+                    dirty = true;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return Sperre, unter der gespeichert wird. Wer unter der Sperre des Themenbaums {@link #saveNow()} aufruft,
+     * muss sie vorher nehmen, da sich sonst ein Speichervorgang im Hintergrund mit ihm verklemmen kann.
+     * @since 1.0
+     */
+    Object getSaveLock() {
+        return saveLock;
+    }
+
+    /**
+     * Eingeplanter Speichervorgang im Hintergrund. Kam seit der Einplanung noch eine Änderung hinzu,
+     * wird der Vorgang entsprechend verschoben, sofern die Maximalzeit noch nicht erreicht ist.
+     *
+     * @since 1.0
+     */
+    private void run() {
+        synchronized (saveLock) {
+            synchronized (this) {
+                long wait = Math.min(lastRequest + delay, firstRequest + maxDelay) - System.currentTimeMillis();
+                if (dirty && wait > 0) {
+                    executor.schedule(this::run, wait, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                scheduled = false;
+                if (!dirty)
+                    return; // Wurde in der Zwischenzeit schon von flush() erledigt
+                dirty = false;
+            }
+
+            try {
+                action.save();
+            } catch (IOException e) {
+                Logging.log(Level.WARNING, "Speichern im Hintergrund fehlgeschlagen", e);
+                synchronized (this) {
+                    dirty = true;
+                    failure = e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unveränderliches Verzeichnis eines veröffentlichten {@link TopicSnapshot Standes} des Themenbaums.
+ * <p>
+ * Wird zusammen mit jedem neuen Stand erzeugt und erlaubt das Nachschlagen von Themen, Titeln und Ordnern ohne jede
+ * Sperre. Darüber beantwortet der {@link TopicTreeController} alle lesenden Anfragen der Oberfläche, sodass diese
+ * nie auf eine laufende Änderung warten muss, auch nicht während deren Ordner und Dateien kopiert werden.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+final class SnapshotIndex {
+
+    /**
+     * Stand der Wurzel des Themenbaums
+     *
+     * @since 1.0
+     */
+    private final TopicSnapshot root;
+
+    /**
+     * Stände aller Themen nach ihrem Titel
+     *
+     * @since 1.0
+     */
+    private final Map<String, TopicSnapshot> byTitle = new HashMap<>();
+
+    /**
+     * Normalisierte Titel aller Themen
+     *
+     * @see FileUtils#normalize(String)
+     * @since 1.0
+     */
+    private final Set<String> normalizedTitles = new HashSet<>();
+
+    /**
+     * Ordner aller Themen nach ihrem Titel
+     *
+     * @since 1.0
+     */
+    private final Map<String, Path> directories = new HashMap<>();
+
+    /**
+     * Ordner der Wurzel, d.h. der Topic-Ordner
+     *
+     * @since 1.0
+     */
+    private final Path rootDirectory;
+
+    /**
+     * Konstruktion des Verzeichnisses eines Standes
+     *
+     * @param root          Stand der Wurzel des Themenbaums
+     * @param rootDirectory Ordner der Wurzel, d.h. der Topic-Ordner
+     * @since 1.0
+     */
+    SnapshotIndex(TopicSnapshot root, Path rootDirectory) {
+        this.root = root;
+        this.rootDirectory = rootDirectory;
+        for (TopicSnapshot child : root.getChildren())
+            add(child, rootDirectory);
+    }
+
+    /**
+     * Rekursives Aufnehmen eines Themas samt aller Unterthemen
+     *
+     * @param topic           Stand des Themas
+     * @param parentDirectory Ordner des Elternthemas
+     * @since 1.0
+     */
+    private void add(TopicSnapshot topic, Path parentDirectory) {
+        String normalized = FileUtils.normalize(topic.getTitle());
+        Path directory = parentDirectory.resolve(normalized);
+        byTitle.put(topic.getTitle(), topic);
+        normalizedTitles.add(normalized);
+        directories.put(topic.getTitle(), directory);
+        for (TopicSnapshot child : topic.getChildren())
+            add(child, directory);
+    }
+
+    /**
+     * @return Stand der Wurzel des Themenbaums
+     * @since 1.0
+     */
+    TopicSnapshot getRoot() {
+        return root;
+    }
+
+    /**
+     * Nachschlagen eines Themas
+     *
+     * @param title Titel des Themas. Wenn {@code NULL}, dann wird die Wurzel verwendet.
+     * @return Stand des Themas oder {@code null}, wenn es kein Thema mit diesem Titel gibt
+     * @since 1.0
+     */
+    TopicSnapshot get(String title) {
+        return title != null ? byTitle.get(title) : root;
+    }
+
+    /**
+     * @param normalizedTitle Normalisierter Titel
+     * @return ob ein Thema mit diesem normalisierten Titel existiert
+     * @since 1.0
+     */
+    boolean containsNormalized(String normalizedTitle) {
+        return normalizedTitles.contains(normalizedTitle);
+    }
+
+    /**
+     * Nachschlagen des Ordners eines Themas
+     *
+     * @param title Titel des Themas. Wenn {@code NULL}, dann wird die Wurzel verwendet.
+     * @return Ordner des Themas oder {@code null}, wenn es kein Thema mit diesem Titel gibt
+     * @since 1.0
+     */
+    Path getDirectory(String title) {
+        return title != null ? directories.get(title) : rootDirectory;
+    }
+}
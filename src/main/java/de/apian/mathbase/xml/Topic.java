@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.TitleOrder;
+
+import java.nio.file.Path;
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kompakte Repräsentation eines Themas im Themenbaum.
+ * <p>
+ * Ein {@code Topic} hält nur seinen Titel, seine Unterthemen und seine Inhalte und ersetzt damit
+ * das deutlich schwergewichtigere DOM im Speicher.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class Topic {
+
+    /**
+     * Titel des Themas; {@code null} bei der Wurzel.
+     *
+     * @since 1.0
+     */
+    private String title;
+
+    /**
+     * Sortierschlüssel des Titels; {@code null}, solange er nicht benötigt wurde.
+     *
+     * @see TitleOrder
+     * @since 1.0
+     */
+    private CollationKey sortKey;
+
+    /**
+     * Elternthema; {@code null} bei der Wurzel oder einem noch nicht eingehängten Thema.
+     *
+     * @since 1.0
+     */
+    private Topic parent;
+
+    /**
+     * Unterthemen in ihrer Reihenfolge in der XML-Datei.
+     *
+     * @since 1.0
+     */
+    private final List<Topic> children = new ArrayList<>();
+
+    /**
+     * Inhalte in ihrer Reihenfolge in der XML-Datei.
+     *
+     * @since 1.0
+     */
+    private final List<Content> contents = new ArrayList<>();
+
+    /**
+     * Zuletzt erzeugter unveränderlicher Stand dieses Themas; {@code null}, wenn er seitdem veraltet ist.
+     *
+     * @see TopicSnapshot#of(Topic)
+     * @since 1.0
+     */
+    private TopicSnapshot snapshot;
+
+    /**
+     * Zuletzt ermittelter Pfad des Ordners dieses Themas; {@code null}, wenn er seitdem veraltet ist.
+     *
+     * @since 1.0
+     */
+    private volatile Path directory;
+
+    /**
+     * Konstruktion eines Themas.
+     *
+     * @param title Titel des Themas; {@code null} bei der Wurzel
+     * @since 1.0
+     */
+    Topic(String title) {
+        this.title = title;
+    }
+
+    /**
+     * @return Titel des Themas; {@code null} bei der Wurzel
+     * @since 1.0
+     */
+    String getTitle() {
+        return title;
+    }
+
+    /**
+     * @param title Neuer Titel des Themas
+     * @since 1.0
+     */
+    void setTitle(String title) {
+        this.title = title;
+        sortKey = null;
+        invalidateDirectory();
+    }
+
+    /**
+     * @return Sortierschlüssel des Titels, der beim ersten Aufruf erzeugt wird
+     * @since 1.0
+     */
+    CollationKey getSortKey() {
+        if (sortKey == null)
+            sortKey = TitleOrder.keyOf(title);
+        return sortKey;
+    }
+
+    /**
+     * @return Elternthema oder {@code null}
+     * @since 1.0
+     */
+    Topic getParent() {
+        return parent;
+    }
+
+    /**
+     * @return ob dieses Thema die Wurzel des Themenbaums ist
+     * @since 1.0
+     */
+    boolean isRoot() {
+        return title == null;
+    }
+
+    /**
+     * @return Veränderbare Liste der Unterthemen
+     * @since 1.0
+     */
+    List<Topic> getChildren() {
+        return children;
+    }
+
+    /**
+     * @return Veränderbare Liste der Inhalte
+     * @since 1.0
+     */
+    List<Content> getContents() {
+        return contents;
+    }
+
+    /**
+     * @return Zuletzt erzeugter Stand dieses Themas oder {@code null}, wenn er veraltet ist
+     * @since 1.0
+     */
+    TopicSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @param snapshot Neu erzeugter Stand dieses Themas
+     * @since 1.0
+     */
+    void setSnapshot(TopicSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Verwerfen des Standes dieses Themas und aller seiner Vorfahren nach einer Änderung.
+     * Die Stände aller anderen Themen bleiben gültig und werden wiederverwendet.
+     *
+     * @since 1.0
+     */
+    void invalidateSnapshot() {
+        for (Topic topic = this; topic != null; topic = topic.parent)
+            topic.snapshot = null;
+    }
+
+    /**
+     * @return Zuletzt ermittelter Pfad des Ordners dieses Themas oder {@code null}, wenn er veraltet ist
+     * @since 1.0
+     */
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param directory Neu ermittelter Pfad des Ordners dieses Themas
+     * @since 1.0
+     */
+    void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Verwerfen der Pfade dieses Themas und aller seiner Unterthemen, nachdem sich sein Titel oder seine Position
+     * geändert hat.
+     * <p>
+     * Da der Pfad eines Themas nur über die Pfade seiner Vorfahren ermittelt wird, hat ein Thema ohne Pfad auch keine
+     * Unterthemen mit Pfad. Dort kann also abgebrochen werden.
+     *
+     * @since 1.0
+     */
+    void invalidateDirectory() {
+        if (directory == null)
+            return;
+        directory = null;
+        for (Topic child : children)
+            child.invalidateDirectory();
+    }
+
+    /**
+     * Einhängen eines Unterthemas an einer bestimmten Stelle. Ist das Thema bereits woanders eingehängt,
+     * so wird es vorher dort entfernt.
+     *
+     * @param index Position unter den Unterthemen
+     * @param child Einzuhängendes Thema
+     * @since 1.0
+     */
+    void insertChild(int index, Topic child) {
+        child.detach();
+        children.add(index, child);
+        child.parent = this;
+        child.invalidateDirectory();
+    }
+
+    /**
+     * Anhängen eines Unterthemas ans Ende der Unterthemen.
+     *
+     * @param child Einzuhängendes Thema
+     * @since 1.0
+     */
+    void addChild(Topic child) {
+        insertChild(children.size(), child);
+    }
+
+    /**
+     * Aushängen dieses Themas aus seinem Elternthema.
+     *
+     * @since 1.0
+     */
+    void detach() {
+        if (parent != null) {
+            parent.children.remove(this);
+            parent = null;
+            invalidateDirectory();
+        }
+    }
+
+    /**
+     * Suchen eines Inhalts anhand seines Dateinamens.
+     *
+     * @param filename Dateiname des Inhalts relativ zum Ordner dieses Themas
+     * @return Position des Inhalts oder {@code -1}, falls es keinen solchen Inhalt gibt
+     * @since 1.0
+     */
+    int indexOfContent(String filename) {
+        for (int i = 0; i < contents.size(); i++) {
+            if (contents.get(i).getFilename().equals(filename))
+                return i;
+        }
+        return -1;
+    }
+}
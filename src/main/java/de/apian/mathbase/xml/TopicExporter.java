@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.util.ProgressListener;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export eines Themas samt aller Unterthemen und Inhalte als ZIP-Archiv.
+ * <p>
+ * Das Archiv enthält unter {@value #FRAGMENT_ENTRY} einen Ausschnitt der XML-Datei mit genau diesem Thema und daneben
+ * dessen Ordner mit allen Dateien. Jede Datei wird stückweise durchgereicht, der Speicherbedarf hängt damit nicht von
+ * der Größe der Dateien ab. Geschrieben wird in eine temporäre Datei neben der Zieldatei, die erst nach vollständigem
+ * Export an deren Stelle verschoben wird.
+ * <p>
+ * Grundlage ist ein {@link TopicSnapshot}. Die Dateien des Themas werden aber direkt aus seinem Ordner gelesen, daher
+ * darf der Themenbaum während des Exports nicht verändert werden. Die {@link AsyncTopicTreeController Oberfläche}
+ * stellt den Export dazu in die Reihenfolge der Änderungen.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class TopicExporter {
+
+    /**
+     * Name des Ausschnitts der XML-Datei im Archiv
+     *
+     * @since 1.0
+     */
+    public static final String FRAGMENT_ENTRY = "topic_tree.xml";
+
+    /**
+     * Größe des Puffers beim Durchreichen der Dateien
+     *
+     * @since 1.0
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Kontrolleur, aus dessen Themenbaum exportiert wird
+     *
+     * @since 1.0
+     */
+    private final TopicTreeController controller;
+
+    /**
+     * Konstruktion eines Exports
+     *
+     * @param controller Kontrolleur, aus dessen Themenbaum exportiert wird
+     * @since 1.0
+     */
+    public TopicExporter(TopicTreeController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Exportieren eines Themas. Schlägt der Export fehl, bleibt eine bereits vorhandene Zieldatei unverändert.
+     *
+     * @param title    Titel des Themas
+     * @param target   Pfad der Zieldatei
+     * @param listener Empfänger des Fortschritts in Bytes oder {@code null}
+     * @throws IOException wenn das Thema nicht existiert oder eine Datei nicht gelesen bzw. geschrieben werden konnte
+     * @since 1.0
+     */
+    public void exportTopic(String title, Path target, ProgressListener listener) throws IOException {
+        // Pfad von der Wurzel zum Thema in einem einzigen, in sich stimmigen Stand
+        List<TopicSnapshot> path = new ArrayList<>();
+        if (!findPath(controller.getSnapshot(), title, path))
+            throw new IOException("Thema \"" + title + "\" existiert nicht!");
+        TopicSnapshot topic = path.get(path.size() - 1);
+
+        Path directory = controller.getDirectory().resolve(TopicTreeController.TOPICS_PATH);
+        for (TopicSnapshot snapshot : path)
+            directory = directory.resolve(FileUtils.normalize(snapshot.getTitle()));
+        Path base = directory.getParent();
+
+        // Zuerst nur die Pfade und Größen ermitteln, damit der Fortschritt angegeben werden kann
+        List<Path> entries = new ArrayList<>();
+        long[] total = {0};
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                entries.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    entries.add(file);
+                    total[0] += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                BUFFER_SIZE))) {
+            zip.putNextEntry(new ZipEntry(FRAGMENT_ENTRY));
+            zip.write(TopicTreeWriter.shardToByteArray(topic.toTopic()));
+            zip.closeEntry();
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long done = 0;
+            for (Path entry : entries) {
+                String name = base.relativize(entry).toString().replace(entry.getFileSystem().getSeparator(), "/");
+                if (Files.isDirectory(entry)) {
+                    zip.putNextEntry(new ZipEntry(name + "/"));
+                    zip.closeEntry();
+                    continue;
+                }
+
+                // Bereits komprimierte Formate nicht noch einmal vergeblich komprimieren
+                Content.Type type = Content.Type.forExtension(FileUtils.getFileExtension(entry));
+                zip.setLevel(type == Content.Type.VIDEO || type == Content.Type.IMAGE ? Deflater.NO_COMPRESSION
+                        : Deflater.DEFAULT_COMPRESSION);
+                zip.putNextEntry(new ZipEntry(name));
+                try (InputStream in = Files.newInputStream(entry)) {
+                    for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                        zip.write(buffer, 0, read);
+                        done += read;
+                        if (listener != null)
+                            listener.progress(done, total[0]);
+                    }
+                }
+                zip.closeEntry();
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e1) {
+                e.addSuppressed(e1);
+            }
+            throw e;
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e1) {
+                e.addSuppressed(e1);
+            }
+            throw e;
+        }
+        Logging.log(Level.INFO, "Thema \"" + title + "\" mit " + entries.size() + " Einträgen nach \"" + target
+                + "\" exportiert");
+    }
+
+    /**
+     * Rekursives Suchen des Pfads von einem Thema zu einem Nachfahren.
+     *
+     * @param topic Thema, bei dem die Suche beginnt; gehört selbst nicht zum Pfad, sofern es die Wurzel ist
+     * @param title Titel des gesuchten Nachfahren
+     * @param path  Liste, an die der Pfad ohne die Wurzel angehängt wird
+     * @return ob der Nachfahre gefunden wurde
+     * @since 1.0
+     */
+    private static boolean findPath(TopicSnapshot topic, String title, List<TopicSnapshot> path) {
+        if (!topic.isRoot())
+            path.add(topic);
+        if (title.equals(topic.getTitle()))
+            return true;
+
+        for (TopicSnapshot child : topic.getChildren()) {
+            if (findPath(child, title, path))
+                return true;
+        }
+        if (!topic.isRoot())
+            path.remove(path.size() - 1);
+        return false;
+    }
+}
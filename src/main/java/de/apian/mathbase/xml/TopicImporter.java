@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.Constants;
+import de.apian.mathbase.util.FileUtils;
+import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.util.ParallelTasks;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Import einer ganzen Ordnerstruktur in den Themenbaum.
+ * <p>
+ * Der gewählte Ordner und jeder seiner Unterordner wird zu einem Thema, jede darin enthaltene Datei zu einem Inhalt
+ * dieses Themas, dessen Typ sich aus der Dateiendung ergibt. Der gesamte Import wird als eine einzige
+ * {@link TopicTreeTransaction} ausgeführt: Zuerst werden alle Themen angelegt, danach werden alle Dateien gleichzeitig
+ * kopiert und zuletzt wird genau einmal gespeichert. Schlägt etwas fehl, bleibt der Themenbaum unverändert.
+ * <p>
+ * Da jeder Titel im Themenbaum einzigartig sein muss, wird ein bereits vergebener Ordnername durchnummeriert.
+ * Versteckte Dateien und Ordner werden übersprungen.
+ * <p>
+ * Außerdem können mit dem {@link TopicExporter} erstellte Archive wieder importiert werden. Deren Titel werden
+ * unverändert übernommen und müssen daher noch frei sein.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class TopicImporter {
+
+    /**
+     * Größe, bis zu der ein Eintrag eines Archivs im Speicher gepuffert und gleichzeitig mit anderen geschrieben wird.
+     * Größere Einträge werden direkt beim Lesen geschrieben, damit der Speicherbedarf begrenzt bleibt.
+     *
+     * @since 1.0
+     */
+    private static final int BUFFERED_ENTRY_SIZE = 1024 * 1024;
+
+    /**
+     * Kontrolleur, in dessen Themenbaum importiert wird
+     *
+     * @since 1.0
+     */
+    private final TopicTreeController controller;
+
+    /**
+     * Normalisierte Titel der in diesem Import bereits vergebenen Themen
+     *
+     * @see FileUtils#normalize(String)
+     * @since 1.0
+     */
+    private final Set<String> usedTitles = new HashSet<>();
+
+    /**
+     * Zu importierende Dateien mit dem Titel ihres künftigen Themas
+     *
+     * @since 1.0
+     */
+    private final Map<Path, String> files = new LinkedHashMap<>();
+
+    /**
+     * Konstruktion eines Imports
+     *
+     * @param controller Kontrolleur, in dessen Themenbaum importiert wird
+     * @since 1.0
+     */
+    public TopicImporter(TopicTreeController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Importieren eines Ordners samt aller Unterordner und Dateien als neues Thema.
+     *
+     * @param source Zu importierender Ordner
+     * @param parent Titel des Elternknotens des neuen Themas. Wenn {@code NULL}, dann wird die Wurzel verwendet.
+     * @return Titel des neuen Themas
+     * @throws TitleCollisionException wenn ein Thema nicht angelegt werden konnte
+     * @throws IOException             wenn der Ordner nicht gelesen oder eine Datei nicht kopiert werden konnte
+     * @since 1.0
+     */
+    public String importDirectory(Path source, String parent) throws TitleCollisionException, IOException {
+        if (!Files.isDirectory(source))
+            throw new IOException("\"" + source + "\" ist kein Ordner!");
+
+        usedTitles.clear();
+        files.clear();
+
+        // Zuerst alle Themen, damit danach alle Dateien am Stück gleichzeitig kopiert werden können
+        TopicTreeTransaction transaction = controller.beginTransaction();
+        String title = collect(source, parent, transaction);
+        for (Map.Entry<Path, String> file : files.entrySet()) {
+            Path path = file.getKey();
+            String fileName = path.getFileName().toString();
+            String extension = FileUtils.getFileExtension(path);
+            String caption = fileName.substring(0, fileName.length() - extension.length());
+            transaction.addContent(new Content(Content.Type.forExtension(extension), path.toString(), caption),
+                    file.getValue());
+        }
+
+        transaction.commit();
+        Logging.log(Level.INFO, "Ordner \"" + source + "\" mit " + usedTitles.size() + " Themen und " + files.size()
+                + " Dateien als \"" + title + "\" importiert");
+        return title;
+    }
+
+    /**
+     * Importieren eines mit dem {@link TopicExporter} erstellten Archivs als neues Thema.
+     * <p>
+     * Zuerst wird die Beschreibung am Anfang des Archivs gelesen und geprüft, ob alle Titel noch frei sind. Danach
+     * werden die Dateien beim Durchlaufen des Archivs entpackt und gleichzeitig geschrieben. Zuletzt werden sie in
+     * einer einzigen Transaktion als Inhalte übernommen.
+     *
+     * @param archive Zu importierendes Archiv
+     * @param parent  Titel des Elternknotens des neuen Themas. Wenn {@code NULL}, dann wird die Wurzel verwendet.
+     * @return Titel des neuen Themas
+     * @throws TitleCollisionException wenn einer der Titel im Archiv bereits vergeben ist
+     * @throws IOException             wenn das Archiv nicht gelesen oder eine Datei nicht geschrieben werden konnte
+     * @since 1.0
+     */
+    public String importArchive(Path archive, String parent) throws TitleCollisionException, IOException {
+        usedTitles.clear();
+        files.clear();
+
+        Path extracted = Files.createTempDirectory(controller.getDirectory().toAbsolutePath(), ".import");
+        try {
+            Topic topic;
+            try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive)))) {
+                ZipEntry entry = zip.getNextEntry();
+                if (entry == null || !entry.getName().equals(TopicExporter.FRAGMENT_ENTRY))
+                    throw new IOException("\"" + archive + "\" enthält keine Beschreibung der Themen!");
+                // Der XML-Leser würde den Datenstrom am Ende schließen, die kleine Beschreibung daher puffern
+                ByteArrayOutputStream fragment = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                for (int read = zip.read(buffer); read != -1; read = zip.read(buffer))
+                    fragment.write(buffer, 0, read);
+                Topic root = TopicTreeReader.read(new ByteArrayInputStream(fragment.toByteArray()));
+                if (root.getChildren().size() != 1)
+                    throw new IOException("\"" + archive + "\" muss genau ein Thema enthalten!");
+                topic = root.getChildren().get(0);
+
+                // Titel vorab prüfen, damit nicht erst umsonst entpackt wird
+                Map<String, Path> targets = new HashMap<>();
+                collect(topic, FileUtils.normalize(topic.getTitle()), extracted, targets);
+                extract(zip, targets);
+            }
+
+            TopicTreeTransaction transaction = controller.beginTransaction();
+            enqueue(topic, parent, extracted, transaction);
+            transaction.commit();
+            Logging.log(Level.INFO, "Archiv \"" + archive + "\" mit " + usedTitles.size() + " Themen und "
+                    + files.size() + " Dateien als \"" + topic.getTitle() + "\" importiert");
+            return topic.getTitle();
+        } finally {
+            if (Files.exists(extracted))
+                FileUtils.delete(extracted);
+        }
+    }
+
+    /**
+     * Rekursives Prüfen der Titel eines Themas aus einem Archiv und Ermitteln der Zielpfade seiner Dateien.
+     *
+     * @param topic     Thema aus der Beschreibung des Archivs
+     * @param directory Pfad des Ordners des Themas innerhalb des Archivs
+     * @param extracted Ordner, in den entpackt wird
+     * @param targets   Zielpfade der Dateien nach Pfad innerhalb des Archivs
+     * @throws TitleCollisionException wenn der Titel bereits vergeben ist
+     * @throws IOException             wenn ein Dateiname aus dem Ordner hinausführen würde
+     * @since 1.0
+     */
+    private void collect(Topic topic, String directory, Path extracted, Map<String, Path> targets)
+            throws TitleCollisionException, IOException {
+        String title = topic.getTitle();
+        if (title.isEmpty() || controller.doesExist(title) || !usedTitles.add(FileUtils.normalize(title)))
+            throw new TitleCollisionException("Thema \"" + title + "\" existiert bereits!");
+
+        for (Content content : topic.getContents()) {
+            String name = directory + "/" + content.getFilename();
+            Path target = extracted.resolve(name).normalize();
+            if (!target.startsWith(extracted) || target.equals(extracted))
+                throw new IOException("Ungültiger Dateiname \"" + content.getFilename() + "\"");
+            targets.put(name, target);
+        }
+        for (Topic child : topic.getChildren())
+            collect(child, directory + "/" + FileUtils.normalize(child.getTitle()), extracted, targets);
+    }
+
+    /**
+     * Entpacken aller benötigten Dateien eines Archivs. Kleine Dateien werden gepuffert und gleichzeitig auf
+     * {@link Constants#COPY_THREADS} Threads geschrieben, große direkt beim Lesen.
+     *
+     * @param zip     Archiv, dessen Beschreibung bereits gelesen wurde
+     * @param targets Zielpfade der benötigten Dateien nach Pfad innerhalb des Archivs
+     * @throws IOException wenn eine Datei nicht geschrieben werden konnte oder im Archiv fehlt
+     * @since 1.0
+     */
+    private static void extract(ZipInputStream zip, Map<String, Path> targets) throws IOException {
+        // Begrenzt die Anzahl gepufferter Dateien und damit den Speicherbedarf
+        Semaphore slots = new Semaphore(2 * Constants.COPY_THREADS);
+        // Beim Schließen laufende Schreibvorgänge abwarten, damit danach nichts mehr in den Ordner geschrieben wird
+        try (ParallelTasks tasks = new ParallelTasks("Entpacken", Constants.COPY_THREADS)) {
+            byte[] buffer = new byte[BUFFERED_ENTRY_SIZE];
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                Path target = targets.remove(entry.getName());
+                if (target == null)
+                    continue;
+                Files.createDirectories(target.getParent());
+
+                int length = fill(zip, buffer);
+                if (length < buffer.length) {
+                    byte[] data = Arrays.copyOf(buffer, length);
+                    slots.acquire();
+                    tasks.submit(() -> {
+                        try {
+                            Files.write(target, data);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } else {
+                    try (OutputStream out = Files.newOutputStream(target)) {
+                        out.write(buffer, 0, length);
+                        for (int read = zip.read(buffer); read != -1; read = zip.read(buffer))
+                            out.write(buffer, 0, read);
+                    }
+                }
+            }
+            tasks.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Entpacken wurde unterbrochen");
+        }
+
+        if (!targets.isEmpty())
+            throw new IOException("Im Archiv fehlt \"" + targets.keySet().iterator().next() + "\"");
+    }
+
+    /**
+     * Lesen aus einem Datenstrom, bis der Puffer voll oder der Datenstrom zu Ende ist
+     *
+     * @param in     Datenstrom
+     * @param buffer Puffer
+     * @return Anzahl der gelesenen Bytes; kleiner als die Größe des Puffers genau dann, wenn der Datenstrom zu Ende ist
+     * @throws IOException wenn der Datenstrom nicht gelesen werden konnte
+     * @since 1.0
+     */
+    private static int fill(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        for (int read = 0; read != -1 && length < buffer.length; read = in.read(buffer, length, buffer.length - length))
+            length += read;
+        return length;
+    }
+
+    /**
+     * Rekursives Vormerken eines Themas aus einem Archiv samt seiner entpackten Dateien.
+     *
+     * @param topic       Thema aus der Beschreibung des Archivs
+     * @param parent      Titel des Elternknotens
+     * @param directory   Ordner, in den die Dateien des Themas entpackt wurden
+     * @param transaction Transaktion des Imports
+     * @since 1.0
+     */
+    private void enqueue(Topic topic, String parent, Path directory, TopicTreeTransaction transaction) {
+        Path topicDirectory = directory.resolve(FileUtils.normalize(topic.getTitle()));
+        transaction.addNode(topic.getTitle(), parent);
+        for (Content content : topic.getContents()) {
+            Path file = topicDirectory.resolve(content.getFilename());
+            files.put(file, topic.getTitle());
+            transaction.adoptContent(new Content(content.getType(), file.toString(), content.getCaption()),
+                    topic.getTitle());
+        }
+        for (Topic child : topic.getChildren())
+            enqueue(child, topic.getTitle(), topicDirectory, transaction);
+    }
+
+    /**
+     * Rekursives Vormerken eines Ordners als Thema und Sammeln seiner Dateien.
+     *
+     * @param directory   Ordner
+     * @param parent      Titel des Elternknotens
+     * @param transaction Transaktion des Imports
+     * @return Titel des vorgemerkten Themas
+     * @throws IOException wenn der Ordner nicht gelesen werden konnte
+     * @since 1.0
+     */
+    private String collect(Path directory, String parent, TopicTreeTransaction transaction) throws IOException {
+        String title = uniqueTitle(directory.getFileName() != null ? directory.getFileName().toString()
+                : directory.toString());
+        transaction.addNode(title, parent);
+
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                if (!entry.getFileName().toString().startsWith(".") && !Files.isHidden(entry))
+                    entries.add(entry);
+            }
+        }
+        entries.sort(null);
+
+        for (Path entry : entries) {
+            if (Files.isDirectory(entry))
+                collect(entry, title, transaction);
+            else if (Files.isRegularFile(entry))
+                files.put(entry, title);
+        }
+        return title;
+    }
+
+    /**
+     * Ermitteln eines noch nicht vergebenen Titels
+     *
+     * @param name Gewünschter Titel
+     * @return Gewünschter Titel, bei Bedarf mit angehängter Nummer
+     * @since 1.0
+     */
+    private String uniqueTitle(String name) {
+        String title = name;
+        for (int i = 2; controller.doesExist(title) || usedTitles.contains(FileUtils.normalize(title)); i++)
+            title = name + " (" + i + ")";
+        usedTitles.add(FileUtils.normalize(title));
+        return title;
+    }
+}
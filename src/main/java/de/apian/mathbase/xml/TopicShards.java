@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+import de.apian.mathbase.util.Logging;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+/**
+ * Aufgeteilte Speicherung des Themenbaums mit einer eigenen Datei pro Thema der obersten Ebene.
+ * <p>
+ * Eine kleine Übersichtsdatei enthält die Inhalte der Wurzel und listet die Dateien der einzelnen Teile auf.
+ * Jeder Teil hat das Format der XML-Datei des Themenbaums und enthält genau ein Thema der obersten Ebene.
+ * Beim Speichern werden nur die seit dem letzten Speichern veränderten Teile neu geschrieben, beim Laden werden
+ * alle Teile parallel eingelesen.
+ * <p>
+ * Die Übersichtsdatei trägt eine fortlaufende Generation, sodass sie sich bei jedem Speichern ändert und zuletzt
+ * geschrieben wird. Das {@link TopicTreeJournal} verwendet sie daher als Markierung des gespeicherten Stands.
+ * <p>
+ * Vorhandene Teile werden nie überschrieben. Ein veränderter Teil wird in eine neue Datei mit der Generation im Namen
+ * geschrieben, auf die nur die neue Übersichtsdatei verweist. Erst nachdem diese atomar ersetzt wurde, werden die
+ * Dateien der alten Generation gelöscht. Bei einem Absturz dazwischen bleibt die alte Übersichtsdatei samt allen
+ * ihren Teilen gültig; die verwaisten neuen Dateien werden beim nächsten Laden gelöscht.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class TopicShards {
+
+    /**
+     * Bezeichner der Wurzel der Übersichtsdatei
+     *
+     * @since 1.0
+     */
+    private static final String TAG_SHARDS = "topic_shards";
+
+    /**
+     * Bezeichner eines Teils in der Übersichtsdatei
+     *
+     * @since 1.0
+     */
+    private static final String TAG_SHARD = "shard";
+
+    /**
+     * Bezeichner des Attributs {@code generation} der Übersichtsdatei
+     *
+     * @since 1.0
+     */
+    private static final String ATTR_GENERATION = "generation";
+
+    /**
+     * Bezeichner des Attributs {@code file} (Dateiname relativ zum Ordner der Teile)
+     *
+     * @since 1.0
+     */
+    private static final String ATTR_FILE = "file";
+
+    /**
+     * Fabrik für die StAX-Leser der Übersichtsdatei
+     *
+     * @since 1.0
+     */
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Zu schreibender Stand der aufgeteilten Speicherung.
+     *
+     * @since 1.0
+     */
+    static class Pending {
+
+        /**
+         * Inhalt der Übersichtsdatei
+         *
+         * @since 1.0
+         */
+        final byte[] manifest;
+
+        /**
+         * Neu zu schreibende Teile samt Inhalt der jeweiligen Datei
+         *
+         * @since 1.0
+         */
+        private final Map<Topic, byte[]> shards;
+
+        /**
+         * Dateinamen der zu schreibenden Teile
+         *
+         * @since 1.0
+         */
+        private final Map<Topic, String> files;
+
+        /**
+         * Nach dem Schreiben der Übersichtsdatei zu löschende Dateien
+         *
+         * @since 1.0
+         */
+        private final List<String> obsolete;
+
+        private Pending(byte[] manifest, Map<Topic, byte[]> shards, Map<Topic, String> files, List<String> obsolete) {
+            this.manifest = manifest;
+            this.shards = shards;
+            this.files = files;
+            this.obsolete = obsolete;
+        }
+    }
+
+    /**
+     * Pfad der Übersichtsdatei
+     *
+     * @since 1.0
+     */
+    private final Path manifestPath;
+
+    /**
+     * Ordner der einzelnen Teile
+     *
+     * @since 1.0
+     */
+    private final Path directory;
+
+    /**
+     * Dateinamen der Teile je Thema der obersten Ebene
+     *
+     * @since 1.0
+     */
+    private final Map<Topic, String> files = new IdentityHashMap<>();
+
+    /**
+     * Seit dem letzten Speichern veränderte Themen der obersten Ebene
+     *
+     * @since 1.0
+     */
+    private final Set<Topic> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Noch zu löschende Dateien nicht mehr benötigter Teile
+     *
+     * @since 1.0
+     */
+    private final List<String> obsolete = new ArrayList<>();
+
+    /**
+     * Generation der zuletzt geladenen oder geschriebenen Übersichtsdatei
+     *
+     * @since 1.0
+     */
+    private long generation;
+
+    /**
+     * Konstruktion der aufgeteilten Speicherung.
+     *
+     * @param manifestPath Pfad der Übersichtsdatei
+     * @param directory    Ordner der einzelnen Teile
+     * @since 1.0
+     */
+    TopicShards(Path manifestPath, Path directory) {
+        this.manifestPath = manifestPath;
+        this.directory = directory;
+    }
+
+    /**
+     * @return ob der Themenbaum aufgeteilt gespeichert ist
+     * @since 1.0
+     */
+    boolean exists() {
+        return Files.exists(manifestPath);
+    }
+
+    /**
+     * @return Pfad der Übersichtsdatei
+     * @since 1.0
+     */
+    Path getManifestPath() {
+        return manifestPath;
+    }
+
+    /**
+     * Laden des Themenbaums aus der Übersichtsdatei und parallel aus allen Teilen.
+     *
+     * @return Wurzel des Themenbaums
+     * @throws IOException wenn die Übersichtsdatei oder einer der Teile nicht geladen werden konnte
+     * @since 1.0
+     */
+    synchronized Topic load() throws IOException {
+        Topic root = new Topic(null);
+        List<String> shardFiles = readManifest(root);
+        deleteOrphans(shardFiles);
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(shardFiles.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            List<Future<Topic>> futures = new ArrayList<>(shardFiles.size());
+            for (String file : shardFiles)
+                futures.add(executor.submit(() -> TopicTreeReader.read(directory.resolve(file))));
+
+            files.clear();
+            dirty.clear();
+            for (int i = 0; i < futures.size(); i++) {
+                Topic shardRoot = futures.get(i).get();
+                // Kopie der Liste, da addChild das Thema aus seiner bisherigen Wurzel entfernt
+                for (Topic topic : new ArrayList<>(shardRoot.getChildren())) {
+                    root.addChild(topic);
+                    if (files.containsValue(shardFiles.get(i)))
+                        dirty.add(topic); // Mehrere Themen in einem Teil werden beim Speichern aufgeteilt
+                    else
+                        files.put(topic, shardFiles.get(i));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Laden der Teile unterbrochen", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Teil konnte nicht geladen werden", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        Logging.log(Level.INFO, shardFiles.size() + " Teile aus \"" + manifestPath + "\" geladen");
+        return root;
+    }
+
+    /**
+     * Löschen aller Dateien im Ordner der Teile, auf die die Übersichtsdatei nicht verweist, z.B. von einem durch
+     * einen Absturz unterbrochenen Speichern. Fehler werden nur geloggt.
+     *
+     * @param shardFiles Dateinamen aller Teile laut Übersichtsdatei
+     * @since 1.0
+     */
+    private void deleteOrphans(List<String> shardFiles) {
+        if (!Files.isDirectory(directory))
+            return;
+
+        Set<String> referenced = new HashSet<>(shardFiles);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (referenced.contains(file.getFileName().toString()))
+                    continue;
+                try {
+                    Files.delete(file);
+                    Logging.log(Level.INFO, "Verwaister Teil \"" + file + "\" gelöscht");
+                } catch (IOException e) {
+                    Logging.log(Level.WARNING, "Verwaister Teil \"" + file + "\" konnte nicht gelöscht werden", e);
+                }
+            }
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "Ordner \"" + directory + "\" konnte nicht gelesen werden", e);
+        }
+    }
+
+    /**
+     * Einlesen der Übersichtsdatei.
+     *
+     * @param root Wurzel, der die Inhalte der Übersichtsdatei hinzugefügt werden
+     * @return Dateinamen aller Teile in ihrer Reihenfolge
+     * @throws IOException wenn die Übersichtsdatei nicht gelesen werden konnte
+     * @since 1.0
+     */
+    private List<String> readManifest(Topic root) throws IOException {
+        List<String> shardFiles = new ArrayList<>();
+        XMLStreamReader reader = null;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(manifestPath))) {
+            reader = FACTORY.createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                    continue;
+
+                String name = reader.getLocalName();
+                if (name.equals(TAG_SHARDS)) {
+                    String value = reader.getAttributeValue(null, ATTR_GENERATION);
+                    generation = value != null ? Long.parseLong(value) : 0;
+                } else if (name.equals(TAG_SHARD)) {
+                    shardFiles.add(reader.getAttributeValue(null, ATTR_FILE));
+                } else if (name.equals(TopicTreeController.TAG_CONTENT)) {
+                    String caption = reader.getAttributeValue(null, TopicTreeController.ATTR_CAPTION);
+                    root.getContents().add(new Content(
+                            Content.Type.forName(reader.getAttributeValue(null, TopicTreeController.ATTR_TYPE)),
+                            reader.getAttributeValue(null, TopicTreeController.ATTR_FILENAME), caption));
+                }
+            }
+        } catch (XMLStreamException | IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Fehler beim Parsen der Datei \"" + manifestPath + "\"", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Der Datenstrom wird bereits von try-with-resources geschlossen
+                }
+            }
+        }
+        return shardFiles;
+    }
+
+    /**
+     * Markieren des Teils, in dem ein Thema liegt, als verändert. Muss vor dem Aushängen eines Themas aufgerufen
+     * werden, da sich der betroffene Teil danach nicht mehr ermitteln lässt.
+     *
+     * @param topic Verändertes Thema oder die Wurzel
+     * @since 1.0
+     */
+    synchronized void touch(Topic topic) {
+        Topic top = topic;
+        while (top.getParent() != null && !top.getParent().isRoot())
+            top = top.getParent();
+        if (!top.isRoot())
+            dirty.add(top);
+    }
+
+    /**
+     * Markieren aller Teile als verändert, z.B. nach dem Nachspielen des Journals.
+     *
+     * @param root Wurzel des Themenbaums
+     * @since 1.0
+     */
+    synchronized void touchAll(Topic root) {
+        dirty.addAll(root.getChildren());
+    }
+
+    /**
+     * Ermitteln des zu schreibenden Stands. Muss unter derselben Sperre aufgerufen werden,
+     * unter der auch der Themenbaum verändert wird.
+     *
+     * @param root Wurzel des Themenbaums
+     * @return Zu schreibender Stand
+     * @since 1.0
+     */
+    synchronized Pending render(Topic root) {
+        Map<Topic, byte[]> shards = new LinkedHashMap<>();
+        Map<Topic, String> shardFiles = new IdentityHashMap<>();
+        Set<String> used = new HashSet<>(files.values());
+        long next = generation + 1;
+
+        for (Topic topic : root.getChildren()) {
+            // Neue Themen der obersten Ebene bzw. bisher gar nicht aufgeteilt gespeicherte haben noch keine Datei
+            String old = files.get(topic);
+            if (old != null && !dirty.contains(topic))
+                continue;
+
+            // Nie die Datei der alten Generation überschreiben, auf die die alte Übersichtsdatei noch verweist
+            String file = newFileName(topic, next, used);
+            used.add(file);
+            if (old != null)
+                obsolete.add(old);
+            shards.put(topic, TopicTreeWriter.shardToByteArray(topic));
+            shardFiles.put(topic, file);
+        }
+
+        // Nicht mehr auf der obersten Ebene befindliche Themen
+        Set<Topic> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.addAll(root.getChildren());
+        files.entrySet().removeIf(entry -> {
+            if (current.contains(entry.getKey()))
+                return false;
+            obsolete.add(entry.getValue());
+            return true;
+        });
+        files.putAll(shardFiles);
+        dirty.clear();
+
+        generation = next;
+        Pending pending = new Pending(renderManifest(root, generation), shards, shardFiles,
+                new ArrayList<>(obsolete));
+        obsolete.clear();
+        return pending;
+    }
+
+    /**
+     * Schreiben eines zuvor ermittelten Stands: zuerst die veränderten Teile in neue Dateien, dann das atomare
+     * Ersetzen der Übersichtsdatei und zuletzt das Löschen der Dateien der alten Generation. Schlägt das Schreiben
+     * fehl, bleibt die alte Übersichtsdatei gültig und die betroffenen Teile werden beim nächsten Mal erneut in wieder
+     * neue Dateien geschrieben.
+     *
+     * @param pending Zu schreibender Stand
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    void write(Pending pending) throws IOException {
+        try {
+            Files.createDirectories(directory);
+            for (Map.Entry<Topic, byte[]> shard : pending.shards.entrySet())
+                FileUtils.writeAtomically(directory.resolve(pending.files.get(shard.getKey())), shard.getValue());
+            FileUtils.writeAtomically(manifestPath, pending.manifest);
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty.addAll(pending.shards.keySet());
+                obsolete.addAll(pending.obsolete);
+                // Die eventuell schon geschriebenen neuen Dateien werden nie referenziert
+                obsolete.addAll(pending.files.values());
+            }
+            throw e;
+        }
+
+        for (String file : pending.obsolete) {
+            try {
+                Files.deleteIfExists(directory.resolve(file));
+            } catch (IOException e) {
+                Logging.log(Level.WARNING, "Nicht mehr benötigter Teil \"" + file + "\" konnte nicht gelöscht werden", e);
+            }
+        }
+        Logging.log(Level.INFO, pending.shards.size() + " Teile und \"" + manifestPath + "\" gespeichert");
+    }
+
+    /**
+     * Entfernen der aufgeteilten Speicherung, nachdem der Themenbaum wieder als einzelne Datei gespeichert wurde.
+     *
+     * @throws IOException wenn die Übersichtsdatei oder der Ordner der Teile nicht gelöscht werden konnte
+     * @since 1.0
+     */
+    synchronized void remove() throws IOException {
+        Files.deleteIfExists(manifestPath);
+        if (Files.exists(directory))
+            FileUtils.delete(directory);
+        files.clear();
+        dirty.clear();
+        obsolete.clear();
+    }
+
+    /**
+     * Ermitteln eines noch freien Dateinamens für einen neu zu schreibenden Teil.
+     *
+     * @param topic      Thema der obersten Ebene
+     * @param generation Generation der Übersichtsdatei, die auf den Teil verweisen wird
+     * @param used       Bereits vergebene Dateinamen
+     * @return Freier Dateiname
+     * @since 1.0
+     */
+    private String newFileName(Topic topic, long generation, Set<String> used) {
+        String base = FileUtils.normalize(topic.getTitle()) + "." + generation;
+        String file = base + ".xml";
+        for (int i = 0; used.contains(file) || Files.exists(directory.resolve(file)); i++)
+            file = base + "-" + i + ".xml";
+        return file;
+    }
+
+    /**
+     * Erzeugen der Übersichtsdatei.
+     *
+     * @param root       Wurzel des Themenbaums
+     * @param generation Generation der Übersichtsdatei
+     * @return Inhalt der Übersichtsdatei in UTF-8
+     * @since 1.0
+     */
+    private byte[] renderManifest(Topic root, long generation) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write(TopicTreeWriter.DECLARATION);
+            writer.write('\n');
+            writer.write('<' + TAG_SHARDS);
+            TopicTreeWriter.writeAttribute(writer, ATTR_GENERATION, Long.toString(generation));
+            writer.write(">\n");
+            for (Content content : root.getContents())
+                TopicTreeWriter.writeContent(writer, content, 1);
+            for (Topic topic : root.getChildren()) {
+                TopicTreeWriter.indent(writer, 1);
+                writer.write('<' + TAG_SHARD);
+                TopicTreeWriter.writeAttribute(writer, ATTR_FILE, files.get(topic));
+                writer.write("/>\n");
+            }
+            writer.write("</" + TAG_SHARDS + ">\n");
+        } catch (IOException e) {
+            // Kann beim Schreiben in den Speicher nicht vorkommen
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unveränderlicher Stand eines Themas samt aller Unterthemen.
+ * <p>
+ * Nach jeder Änderung veröffentlicht der {@link TopicTreeController} einen neuen Stand des gesamten Themenbaums.
+ * Dabei werden nur die Themen auf dem Pfad von der Wurzel zum veränderten Thema neu erzeugt, alle übrigen Teilbäume
+ * werden vom vorherigen Stand übernommen. Ein einmal geholter Stand kann daher ohne jede Sperre und beliebig lange
+ * durchlaufen werden, z.B. beim Exportieren oder Durchsuchen im Hintergrund, ohne jemals eine halb ausgeführte
+ * Änderung zu sehen.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @see TopicTreeController#getSnapshot()
+ * @since 1.0
+ */
+public final class TopicSnapshot {
+
+    /**
+     * Titel des Themas; {@code null} bei der Wurzel
+     *
+     * @since 1.0
+     */
+    private final String title;
+
+    /**
+     * Unveränderliche Liste der Inhalte
+     *
+     * @since 1.0
+     */
+    private final List<Content> contents;
+
+    /**
+     * Unveränderliche Liste der Unterthemen
+     *
+     * @since 1.0
+     */
+    private final List<TopicSnapshot> children;
+
+    /**
+     * Konstruktion eines Standes. Die Listen werden nicht kopiert und dürfen danach nicht mehr verändert werden.
+     *
+     * @param title    Titel des Themas
+     * @param contents Inhalte
+     * @param children Unterthemen
+     * @since 1.0
+     */
+    private TopicSnapshot(String title, List<Content> contents, List<TopicSnapshot> children) {
+        this.title = title;
+        this.contents = Collections.unmodifiableList(contents);
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Erzeugen des Standes eines Themas. Bereits vorhandene Stände unveränderter Unterthemen werden übernommen.
+     * Darf nur aufgerufen werden, während der Themenbaum nicht verändert werden kann.
+     *
+     * @param topic Thema
+     * @return Stand des Themas
+     * @since 1.0
+     */
+    static TopicSnapshot of(Topic topic) {
+        TopicSnapshot snapshot = topic.getSnapshot();
+        if (snapshot != null)
+            return snapshot;
+
+        List<TopicSnapshot> children = new ArrayList<>(topic.getChildren().size());
+        for (Topic child : topic.getChildren())
+            children.add(of(child));
+        snapshot = new TopicSnapshot(topic.getTitle(), new ArrayList<>(topic.getContents()), children);
+        topic.setSnapshot(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Erzeugen einer veränderbaren, nicht eingehängten Kopie dieses Standes, z.B. um sie mit dem
+     * {@link TopicTreeWriter} zu schreiben.
+     *
+     * @return Kopie des Themas samt aller Unterthemen
+     * @since 1.0
+     */
+    Topic toTopic() {
+        Topic topic = new Topic(title);
+        topic.getContents().addAll(contents);
+        for (TopicSnapshot child : children)
+            topic.addChild(child.toTopic());
+        return topic;
+    }
+
+    /**
+     * @return Titel des Themas; {@code null} bei der Wurzel
+     * @since 1.0
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return ob dieses Thema die Wurzel des Themenbaums ist
+     * @since 1.0
+     */
+    public boolean isRoot() {
+        return title == null;
+    }
+
+    /**
+     * @return Unveränderliche Liste der Inhalte
+     * @since 1.0
+     */
+    public List<Content> getContents() {
+        return contents;
+    }
+
+    /**
+     * @return Unveränderliche Liste der Unterthemen
+     * @since 1.0
+     */
+    public List<TopicSnapshot> getChildren() {
+        return children;
+    }
+
+    /**
+     * Suchen eines Themas anhand seines Titels in diesem Teilbaum.
+     *
+     * @param title Gesuchter Titel
+     * @return Das Thema oder {@code null}, falls es in diesem Teilbaum nicht vorkommt
+     * @since 1.0
+     */
+    public TopicSnapshot find(String title) {
+        if (title.equals(this.title))
+            return this;
+        for (TopicSnapshot child : children) {
+            TopicSnapshot found = child.find(title);
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
+}
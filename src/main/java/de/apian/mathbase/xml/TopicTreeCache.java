@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+import de.apian.mathbase.util.Logging;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.logging.Level;
+
+/**
+ * Binärer Zwischenspeicher des Themenbaums für einen schnellen Programmstart.
+ * <p>
+ * Neben der XML-Datei wird eine kompakte Binärdarstellung des Themenbaums abgelegt, zusammen mit Größe,
+ * Änderungszeitpunkt und SHA-256-Prüfsumme der XML-Datei, aus der sie entstanden ist. Stimmen alle drei beim Start
+ * noch überein, wird der Themenbaum direkt aus dem Zwischenspeicher gelesen, ohne die XML-Datei zu parsen.
+ * Wurde die XML-Datei außerhalb des Programms verändert, ist der Zwischenspeicher ungültig und wird ignoriert.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class TopicTreeCache {
+
+    /**
+     * Kennung am Anfang jeder Datei
+     *
+     * @since 1.0
+     */
+    private static final int MAGIC = 0x4D425443; // "MBTC"
+
+    /**
+     * Version des Formats; muss bei jeder Formatänderung erhöht werden
+     *
+     * @since 1.0
+     */
+    private static final int VERSION = 1;
+
+    private TopicTreeCache() {
+    }
+
+    /**
+     * Binäre Darstellung eines Themenbaums. Wird getrennt vom Schreiben ermittelt,
+     * damit dies unter derselben Sperre wie das Erzeugen der XML-Datei geschehen kann.
+     *
+     * @param root Wurzel des Themenbaums
+     * @return Binäre Darstellung
+     * @throws IOException wenn ein Titel oder eine Beschriftung zu lang ist
+     * @since 1.0
+     */
+    static byte[] encode(Topic root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeTopic(out, root);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Schreiben des Zwischenspeichers für eine gerade gespeicherte XML-Datei.
+     *
+     * @param cache Pfad des Zwischenspeichers
+     * @param xml   Pfad der XML-Datei
+     * @param data  Inhalt der XML-Datei
+     * @param tree  Binäre Darstellung des darin gespeicherten Themenbaums, siehe {@link #encode(Topic)}
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    static void write(Path cache, Path xml, byte[] data, byte[] tree) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(tree.length + 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(data.length);
+            out.writeLong(Files.getLastModifiedTime(xml).toMillis());
+            out.write(sha256(data));
+            out.write(tree);
+        }
+        FileUtils.writeAtomically(cache, bytes.toByteArray());
+    }
+
+    /**
+     * Lesen des Zwischenspeichers, sofern er noch zur XML-Datei passt.
+     *
+     * @param cache Pfad des Zwischenspeichers
+     * @param xml   Pfad der XML-Datei
+     * @return Wurzel des Themenbaums oder {@code null}, falls der Zwischenspeicher fehlt oder ungültig ist
+     * @since 1.0
+     */
+    static Topic read(Path cache, Path xml) {
+        if (!Files.exists(cache) || !Files.exists(xml))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+
+            // Zuerst die billigen Prüfungen, erst danach die Prüfsumme über die ganze XML-Datei
+            long size = in.readLong();
+            long modified = in.readLong();
+            if (size != Files.size(xml) || modified != Files.getLastModifiedTime(xml).toMillis())
+                return invalid(cache, "Größe oder Änderungszeitpunkt");
+
+            byte[] hash = new byte[32];
+            in.readFully(hash);
+            if (!Arrays.equals(hash, sha256(xml)))
+                return invalid(cache, "Prüfsumme");
+
+            Topic root = new Topic(null);
+            readChildren(in, root);
+            return root;
+        } catch (IOException | IllegalArgumentException e) {
+            Logging.log(Level.WARNING, "Zwischenspeicher \"" + cache + "\" konnte nicht gelesen werden", e);
+            return null;
+        }
+    }
+
+    /**
+     * Protokollieren eines ungültigen Zwischenspeichers.
+     *
+     * @param cache  Pfad des Zwischenspeichers
+     * @param reason Nicht übereinstimmendes Merkmal
+     * @return {@code null}
+     * @since 1.0
+     */
+    private static Topic invalid(Path cache, String reason) {
+        Logging.log(Level.INFO, "Zwischenspeicher \"" + cache + "\" ist veraltet (" + reason + ")");
+        return null;
+    }
+
+    /**
+     * Rekursives Schreiben der Inhalte und Unterthemen eines Themas.
+     *
+     * @param out   Ziel der Ausgabe
+     * @param topic Zu schreibendes Thema
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    private static void writeTopic(DataOutputStream out, Topic topic) throws IOException {
+        out.writeInt(topic.getContents().size());
+        for (Content content : topic.getContents()) {
+            out.writeUTF(content.getType().toString());
+            out.writeUTF(content.getFilename());
+            out.writeBoolean(content.getCaption() != null);
+            if (content.getCaption() != null)
+                out.writeUTF(content.getCaption());
+        }
+
+        out.writeInt(topic.getChildren().size());
+        for (Topic child : topic.getChildren()) {
+            out.writeUTF(child.getTitle());
+            writeTopic(out, child);
+        }
+    }
+
+    /**
+     * Rekursives Lesen der Inhalte und Unterthemen eines Themas.
+     *
+     * @param in    Quelle der Eingabe
+     * @param topic Thema, dem die Inhalte und Unterthemen hinzugefügt werden
+     * @throws IOException wenn das Lesen fehlgeschlagen ist
+     * @since 1.0
+     */
+    private static void readChildren(DataInputStream in, Topic topic) throws IOException {
+        int contents = in.readInt();
+        for (int i = 0; i < contents; i++) {
+            Content.Type type = Content.Type.forName(in.readUTF());
+            String filename = in.readUTF();
+            String caption = in.readBoolean() ? in.readUTF() : null;
+            topic.getContents().add(new Content(type, filename, caption));
+        }
+
+        int children = in.readInt();
+        for (int i = 0; i < children; i++) {
+            Topic child = new Topic(in.readUTF());
+            topic.addChild(child);
+            readChildren(in, child);
+        }
+    }
+
+    /**
+     * Berechnung der SHA-256-Prüfsumme einer Datei.
+     *
+     * @param path Pfad der Datei
+     * @return Prüfsumme
+     * @throws IOException wenn die Datei nicht gelesen werden konnte
+     * @since 1.0
+     */
+    private static byte[] sha256(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+                digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Berechnung der SHA-256-Prüfsumme eines Byte-Arrays.
+     *
+     * @param data Daten
+     * @return Prüfsumme
+     * @since 1.0
+     */
+    private static byte[] sha256(byte[] data) {
+        return newDigest().digest(data);
+    }
+
+    /**
+     * @return Neuer SHA-256-Algorithmus
+     * @since 1.0
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Jede Java-Plattform muss SHA-256 unterstützen
+            throw new InternalError(e);
+        }
+    }
+}
@@ -10,19 +10,24 @@ import de.apian.mathbase.gui.dialog.ErrorAlert;
 import de.apian.mathbase.util.Constants;
 import de.apian.mathbase.util.FileUtils;
 import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.util.TitleOrder;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-import javax.xml.transform.TransformerException;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 
 /**
@@ -37,19 +42,18 @@ import java.util.logging.Level;
 public class TopicTreeController {
 
     /**
-     * {@code XmlFileHandler} der XML-Datei
+     * Wurzel des im Speicher gehaltenen Themenbaums
      *
-     * @see <a href="{@docRoot}/de/apian/mathbase/util/XmlFileHandler.html">XmlFileHandler</a>
      * @since 1.0
      */
-    private XmlFileHandler xmlHandler;
+    private Topic root;
 
     /**
      * Pfad des Topic-Ordners relativ zum Arbeitsverzeichnis. Hier werden die eigentlichen Dateien gespeichert
      *
      * @since 1.0
      */
-    private static final String TOPICS_PATH = "topics";
+    static final String TOPICS_PATH = "topics";
 
     /**
      * Pfad der Originaldatei relativ zum Arbeitsverzeichnis
@@ -59,74 +63,219 @@ public class TopicTreeController {
     private static final String ORIGINAL_PATH = "topic_tree.xml";
 
     /**
-     * Pfad des Backups relativ zum Arbeitsverzeichnis
+     * Pfad des Backups früherer Programmversionen relativ zum Arbeitsverzeichnis.
+     * Wird nur noch als letzte Rückfallebene beim Laden verwendet.
      *
      * @since 1.0
      */
     private static final String BACKUP_PATH = "topic_tree.xml.bak";
 
+    /**
+     * Pfad des Ordners der Sicherungen relativ zum Arbeitsverzeichnis
+     *
+     * @see BackupService
+     * @since 1.0
+     */
+    private static final String BACKUPS_PATH = "backups";
+
+    /**
+     * Pfad des Änderungsjournals relativ zum Arbeitsverzeichnis
+     *
+     * @see TopicTreeJournal
+     * @since 1.0
+     */
+    private static final String JOURNAL_PATH = "topic_tree.journal";
+
+    /**
+     * Pfad des binären Zwischenspeichers relativ zum Arbeitsverzeichnis
+     *
+     * @see TopicTreeCache
+     * @since 1.0
+     */
+    private static final String CACHE_PATH = "topic_tree.bin";
+
+    /**
+     * Pfad der Übersichtsdatei der aufgeteilten Speicherung relativ zum Arbeitsverzeichnis
+     *
+     * @see TopicShards
+     * @since 1.0
+     */
+    private static final String SHARDS_PATH = "topic_shards.xml";
+
+    /**
+     * Pfad des Ordners der einzelnen Teile der aufgeteilten Speicherung relativ zum Arbeitsverzeichnis
+     *
+     * @since 1.0
+     */
+    private static final String SHARDS_DIRECTORY = "shards";
+
+    /**
+     * Pfad des Ordners der nach ihrer Prüfsumme abgelegten Dateien relativ zum Arbeitsverzeichnis
+     *
+     * @see ContentStore
+     * @since 1.0
+     */
+    private static final String BLOBS_PATH = "blobs";
+
+    /**
+     * Pfad des Papierkorbs relativ zum Arbeitsverzeichnis
+     *
+     * @see Trash
+     * @since 1.0
+     */
+    private static final String TRASH_PATH = "trash";
+
     /**
      * Bezeichner der Wurzel in der XML-Datei
      *
      * @since 1.0
      */
-    private static final String TAG_ROOT = "topic_tree";
+    static final String TAG_ROOT = "topic_tree";
 
     /**
      * Bezeichner eines Knotens in der XML-Datei
      *
      * @since 1.0
      */
-    private static final String TAG_NODE = "node";
+    static final String TAG_NODE = "node";
 
     /**
      * Bezeichner eines Inhalts in der XML-Datei
      *
      * @since 1.0
      */
-    private static final String TAG_CONTENT = "content";
+    static final String TAG_CONTENT = "content";
 
     /**
      * Bezeichner des Attributs {@code title} in der XML-Datei
      *
      * @since 1.0
      */
-    private static final String ATTR_TITLE = "title";
+    static final String ATTR_TITLE = "title";
 
     /**
      * Bezeichner des Attributs {@code filename} (Dateipfad  relativ zum Ordner des Elternknoten) in der XML-Datei
      *
      * @since 1.0
      */
-    private static final String ATTR_FILENAME = "filename";
+    static final String ATTR_FILENAME = "filename";
 
     /**
      * Bezeichner des Attributs {@code type} (Typ der Inhalte) in der XML-Datei
      *
      * @since 1.0
      */
-    private static final String ATTR_TYPE = "type";
+    static final String ATTR_TYPE = "type";
 
     /**
      * Bezeichner des Attributs {@code caption} in der XML-Datei
      *
      * @since 1.0
      */
-    private static final String ATTR_CAPTION = "caption";
+    static final String ATTR_CAPTION = "caption";
 
     /**
      * Einzigste Instanz des Themenbaumkontrolleurs
      *
      * @since 1.0
      */
-    private static TopicTreeController instance;
+    private static volatile TopicTreeController instance;
+
+    /**
+     * Sperre für den Zugriff auf den Themenbaum. Beliebig viele Threads dürfen gleichzeitig lesen,
+     * verändert wird dagegen immer nur von einem Thread und ohne gleichzeitige Leser. Die öffentlichen lesenden
+     * Methoden nehmen sie nicht, sondern lesen den {@link #published veröffentlichten Stand}, da eine Änderung die
+     * Sperre auch während des Kopierens von Ordnern und Dateien hält.
+     *
+     * @since 1.0
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Zuletzt veröffentlichter unveränderlicher Stand des Themenbaums samt Verzeichnis
+     *
+     * @see #getSnapshot()
+     * @since 1.0
+     */
+    private volatile SnapshotIndex published;
+
+    /**
+     * Planer für das verzögerte Speichern im Hintergrund
+     *
+     * @see Constants#WRITE_BEHIND
+     * @since 1.0
+     */
+    private final SaveScheduler saveScheduler = new SaveScheduler(this::saveFile, Constants.SAVE_DELAY,
+            Constants.MAX_SAVE_DELAY);
+
+    /**
+     * Ordner, in dem die XML-Datei, der Topic-Ordner und alle übrigen Dateien liegen; sonst das Arbeitsverzeichnis
+     *
+     * @since 1.0
+     */
+    private final Path directory;
+
+    /**
+     * Journal der Änderungen seit dem letzten Speichern der XML-Datei
+     *
+     * @since 1.0
+     */
+    private final TopicTreeJournal journal;
+
+    /**
+     * Dienst für die rollierenden Sicherungen der XML-Datei
+     *
+     * @since 1.0
+     */
+    private final BackupService backupService;
+
+    /**
+     * Aufgeteilte Speicherung des Themenbaums
+     *
+     * @see Constants#SHARDED_STORAGE
+     * @since 1.0
+     */
+    private final TopicShards shards;
+
+    /**
+     * Ablage der Dateien nach ihrer Prüfsumme; {@code null}, wenn die Dateien einfach kopiert werden
+     *
+     * @see Constants#DEDUPLICATED_STORAGE
+     * @since 1.0
+     */
+    private final ContentStore contentStore;
+
+    /**
+     * Papierkorb, über den entfernte Ordner und Dateien im Hintergrund gelöscht werden
+     *
+     * @since 1.0
+     */
+    private final Trash trash;
 
     /**
-     * Konstruktion des Kontrolleurs
+     * Index aller Knoten nach ihrem Titel.
+     * <p>
+     * Erspart das Durchsuchen des gesamten Dokuments bei jedem Zugriff auf einen Knoten.
+     *
+     * @since 1.0
+     */
+    private final Map<String, Topic> titleIndex = new HashMap<>();
+
+    /**
+     * Index aller Knoten nach ihrem normalisierten Titel, wie er auch für die Ordnernamen verwendet wird.
+     *
+     * @see FileUtils#normalize(String)
+     * @since 1.0
+     */
+    private final Map<String, Topic> normalizedTitleIndex = new HashMap<>();
+
+    /**
+     * Konstruktion des Kontrolleurs im Arbeitsverzeichnis
      *
      * @since 1.0
      */
     private TopicTreeController() {
+        this(Paths.get(""));
         try {
             loadFile();
         } catch (IOException e) {
@@ -137,7 +286,7 @@ public class TopicTreeController {
             if (result.isPresent()) {
                 if (result.get() == ButtonType.YES) {
                     try {
-                        TopicTreeController.recreateFile();
+                        recreateFile();
                         loadFile();
                     } catch (IOException e1) {
                         ErrorAlert errorAlert = new ErrorAlert(e1);
@@ -153,86 +302,664 @@ public class TopicTreeController {
     }
 
     /**
-     * Singleton-Instanzoperation
+     * Konstruktion des Kontrolleurs in einem bestimmten Ordner, ohne den Themenbaum zu laden
+     *
+     * @param directory Ordner, in dem die XML-Datei, der Topic-Ordner und alle übrigen Dateien liegen
+     * @since 1.0
+     */
+    private TopicTreeController(Path directory) {
+        this.directory = directory;
+        journal = new TopicTreeJournal(directory.resolve(JOURNAL_PATH));
+        backupService = new BackupService(this::renderXml, directory.resolve(BACKUPS_PATH), "topic_tree-",
+                Constants.BACKUP_COUNT, Constants.BACKUP_CHANGES, Constants.BACKUP_INTERVAL);
+        shards = new TopicShards(directory.resolve(SHARDS_PATH), directory.resolve(SHARDS_DIRECTORY));
+        contentStore = openContentStore(directory);
+        trash = new Trash(directory.resolve(TRASH_PATH), Constants.TRASH_DELAY, () -> {
+            // Erst jetzt sind die Verknüpfungen entfernter Inhalte wirklich weg
+            if (contentStore != null)
+                contentStore.purge();
+        });
+    }
+
+    /**
+     * Öffnen eines eigenständigen Kontrolleurs in einem anderen Ordner als dem Arbeitsverzeichnis, z.B. für Tests.
+     * Anders als bei {@link #getInstance()} wird ein Fehler beim Laden nicht angezeigt, sondern weitergeworfen.
+     * Der Kontrolleur muss mit {@link #close()} wieder geschlossen werden.
+     *
+     * @param directory Ordner, in dem die XML-Datei und der Topic-Ordner liegen
+     * @return Kontrolleur mit geladenem Themenbaum
+     * @throws IOException wenn der Themenbaum nicht geladen werden konnte
+     * @since 1.0
+     */
+    static TopicTreeController open(Path directory) throws IOException {
+        TopicTreeController controller = new TopicTreeController(directory);
+        try {
+            controller.loadFile();
+        } catch (IOException | RuntimeException e) {
+            controller.backupService.close();
+            controller.trash.close();
+            throw e;
+        }
+        return controller;
+    }
+
+    /**
+     * Öffnen der Ablage der Dateien, sofern sie eingeschaltet und verfügbar ist. Dabei werden gleich alle nicht mehr
+     * benötigten Dateien gelöscht, z.B. nach einem Absturz.
+     *
+     * @param directory Ordner, in dem der Ordner der Ablage liegt
+     * @return Ablage oder {@code null}
+     * @since 1.0
+     */
+    private static ContentStore openContentStore(Path directory) {
+        if (!Constants.DEDUPLICATED_STORAGE)
+            return null;
+
+        try {
+            ContentStore store = new ContentStore(directory.resolve(BLOBS_PATH));
+            if (!store.isSupported()) {
+                Logging.log(Level.WARNING, "Dateisystem unterstützt keine harten Verknüpfungen, Dateien werden "
+                        + "kopiert");
+                return null;
+            }
+            store.purge();
+            return store;
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "Ablage \"" + BLOBS_PATH + "\" konnte nicht geöffnet werden, Dateien werden "
+                    + "kopiert", e);
+            return null;
+        }
+    }
+
+    /**
+     * Singleton-Instanzoperation. Auch bei gleichzeitigem Aufruf aus mehreren Threads wird der Kontrolleur
+     * nur einmal erzeugt.
      *
      * @return Einzigste Instanz des Themenbaumkontrolleurs
      * @since 1.0
      */
     public static TopicTreeController getInstance() {
-        if (instance == null) {
-            instance = new TopicTreeController();
+        TopicTreeController result = instance;
+        if (result == null) {
+            synchronized (TopicTreeController.class) {
+                result = instance;
+                if (result == null)
+                    instance = result = new TopicTreeController();
+            }
         }
-        return instance;
+        return result;
     }
 
     /**
      * Laden der XML-Datei; bei Fehlschlag wird die Backupdatei geladen.
      * Ist dies auch nicht möglich, so bricht die Methode ab.
+     * <p>
+     * Ist der Themenbaum aufgeteilt gespeichert, werden stattdessen die einzelnen Teile geladen. Passt sonst der
+     * binäre Zwischenspeicher noch zur XML-Datei, wird stattdessen dieser geladen.
      *
      * @throws IOException wenn die Datei sowie die Backup-Datei nicht geladen werden konnten
      * @since 1.0
      */
     private void loadFile() throws IOException {
-        if (!Paths.get(TOPICS_PATH).toFile().exists())
+        if (!directory.resolve(TOPICS_PATH).toFile().exists())
             throw new IOException("Ordner \"" + TOPICS_PATH + "\" existiert nicht!");
+
+        if (shards.exists())
+            loadShards();
+        else
+            loadMonolithic();
+        buildIndex();
+        replayJournal();
+        publish();
+    }
+
+    /**
+     * Laden der aufgeteilten Speicherung; bei Fehlschlag wird die neueste gültige Sicherung geladen. Die XML-Datei
+     * kommt dafür nicht in Frage, da sie seit dem Aufteilen nicht mehr gespeichert wird und somit veraltet ist.
+     * Nach dem Wiederherstellen werden beim nächsten Speichern alle Teile neu geschrieben.
+     *
+     * @throws IOException wenn weder die aufgeteilte Speicherung noch eine der Sicherungen geladen werden konnten
+     * @since 1.0
+     */
+    private void loadShards() throws IOException {
+        try {
+            root = shards.load();
+            Logging.log(Level.INFO, "Aufgeteilte Speicherung \"" + SHARDS_PATH + "\" erfolgreich geladen");
+        } catch (IOException e1) {
+            Logging.log(Level.SEVERE, "Aufgeteilte Speicherung \"" + SHARDS_PATH + "\" konnte nicht geladen werden, "
+                    + "versuche die neueste Sicherung", e1);
+            try {
+                root = restoreBackup(false);
+            } catch (IOException e2) {
+                Logging.log(Level.SEVERE, "Aufgeteilte Speicherung \"" + SHARDS_PATH + "\" konnte aus keiner "
+                        + "Sicherung wiederhergestellt werden", e2);
+                e2.addSuppressed(e1);
+                throw new IOException("Daten konnten nicht geladen werden! Kontaktieren Sie umgehend Ihren "
+                        + "Systemadministrator!", e2);
+            }
+            shards.touchAll(root);
+            saveScheduler.schedule();
+        }
+    }
+
+    /**
+     * Laden der XML-Datei, bevorzugt über den binären Zwischenspeicher.
+     *
+     * @throws IOException wenn weder die Datei noch eine der Sicherungen geladen werden konnten
+     * @since 1.0
+     */
+    private void loadMonolithic() throws IOException {
+        root = TopicTreeCache.read(directory.resolve(CACHE_PATH), directory.resolve(ORIGINAL_PATH));
+        if (root != null) {
+            Logging.log(Level.INFO, "Zwischenspeicher \"" + CACHE_PATH + "\" erfolgreich geladen");
+            return;
+        }
+
+        loadXml();
+        try {
+            byte[] data = Files.readAllBytes(directory.resolve(ORIGINAL_PATH));
+            updateCache(data, TopicTreeCache.encode(root));
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "Zwischenspeicher \"" + CACHE_PATH + "\" konnte nicht erstellt werden", e);
+        }
+    }
+
+    /**
+     * Laden der XML-Datei ohne Zwischenspeicher; bei Fehlschlag wird die neueste gültige Sicherung geladen.
+     *
+     * @throws IOException wenn weder die Datei noch eine der Sicherungen geladen werden konnten
+     * @since 1.0
+     */
+    private void loadXml() throws IOException {
         try { // Versuche zuerst die Original-Datei zu laden
-            xmlHandler = new XmlFileHandler(ORIGINAL_PATH);
+            root = readTopicTree(directory.resolve(ORIGINAL_PATH));
             Logging.log(Level.INFO, "Original-Datei \"" + ORIGINAL_PATH + "\" erfolgreich geladen");
         } catch (IOException e1) {
             Logging.log(Level.WARNING, "Original-Datei \"" + ORIGINAL_PATH + "\" konnte nicht geladen werden", e1);
-            try { // Versuche im Fehlerfall die Backup-Datei wiederherzustellen
-                Files.copy(Paths.get(BACKUP_PATH), Paths.get(ORIGINAL_PATH), StandardCopyOption.REPLACE_EXISTING);
-                xmlHandler = new XmlFileHandler(ORIGINAL_PATH);
-                Logging.log(Level.INFO, "Original-Datei \"" + ORIGINAL_PATH + "\" erfolgreich aus \""
-                        + BACKUP_PATH + "\" wiederhergestellt und geladen");
+            try { // Versuche im Fehlerfall eine Sicherung wiederherzustellen
+                root = restoreBackup(true);
             } catch (IOException e2) {
-                Logging.log(Level.SEVERE, "Datei \"" + ORIGINAL_PATH + "\" konnte nicht aus Backup-Datei \""
-                        + BACKUP_PATH + "\" wiederhergestellt werden", e2);
+                Logging.log(Level.SEVERE, "Datei \"" + ORIGINAL_PATH + "\" konnte aus keiner Sicherung " +
+                        "wiederhergestellt werden", e2);
 
                 // Schmeißt eine IOException, um den aufrufenden Klassen mitzuteilen,
                 // dass die Datei nicht geladen werden konnte
-                e2.initCause(e1);
+                e2.addSuppressed(e1);
                 throw new IOException("Daten konnten nicht geladen werden! Kontaktieren Sie umgehend Ihren Systemadministrator!", e2);
             }
         }
     }
 
+    /**
+     * Wiederherstellen der XML-Datei aus der neuesten gültigen Sicherung. Als letzte Rückfallebene wird das Backup
+     * früherer Programmversionen im Pfad {@value #BACKUP_PATH} versucht.
+     *
+     * @param legacy ob auch das Backup früherer Programmversionen in Frage kommt
+     * @return Wurzel des wiederhergestellten Themenbaums
+     * @throws IOException wenn keine Sicherung gelesen und wiederhergestellt werden konnte
+     * @since 1.0
+     */
+    private Topic restoreBackup(boolean legacy) throws IOException {
+        IOException failure = new IOException("Keine gültige Sicherung gefunden");
+        List<Path> backups = new ArrayList<>();
+        try {
+            backups.addAll(backupService.list());
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+        Path legacyBackup = directory.resolve(BACKUP_PATH);
+        if (legacy && legacyBackup.toFile().exists())
+            backups.add(legacyBackup);
+
+        for (Path backup : backups) {
+            try {
+                byte[] data = backup.equals(legacyBackup) ? Files.readAllBytes(backup) : BackupService.read(backup);
+                Topic topic = TopicTreeReader.read(new ByteArrayInputStream(data));
+                FileUtils.writeAtomically(directory.resolve(ORIGINAL_PATH), data);
+                Logging.log(Level.INFO, "Original-Datei \"" + ORIGINAL_PATH + "\" erfolgreich aus \"" + backup
+                        + "\" wiederhergestellt und geladen");
+                return topic;
+            } catch (IOException e) {
+                Logging.log(Level.WARNING, "Sicherung \"" + backup + "\" ist ungültig", e);
+                failure.addSuppressed(e);
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Aktualisieren des binären Zwischenspeichers nach dem Laden oder Speichern der XML-Datei.
+     *
+     * @param data Inhalt der XML-Datei
+     * @param tree Binäre Darstellung desselben Themenbaums
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    private void updateCache(byte[] data, byte[] tree) throws IOException {
+        TopicTreeCache.write(directory.resolve(CACHE_PATH), directory.resolve(ORIGINAL_PATH), data, tree);
+        Logging.log(Level.INFO, "Zwischenspeicher \"" + CACHE_PATH + "\" aktualisiert");
+    }
+
+    /**
+     * Nachspielen der im Journal festgehaltenen Änderungen über den gerade geladenen Themenbaum.
+     * Die Dateien und Ordner wurden bereits bei der ursprünglichen Änderung angepasst, daher wird hier
+     * nur der Themenbaum im Speicher verändert und anschließend das Speichern im Hintergrund eingeplant.
+     *
+     * @since 1.0
+     */
+    private void replayJournal() {
+        List<TopicTreeJournal.Entry> entries;
+        try {
+            entries = journal.read(shards.exists() ? shards.getManifestPath() : directory.resolve(ORIGINAL_PATH));
+        } catch (IOException e) {
+            Logging.log(Level.SEVERE, "Journal \"" + JOURNAL_PATH + "\" konnte nicht gelesen werden", e);
+            return;
+        }
+        if (entries.isEmpty())
+            return;
+
+        int applied = 0;
+        for (TopicTreeJournal.Entry entry : entries) {
+            try {
+                if (apply(entry))
+                    applied++;
+            } catch (RuntimeException e) {
+                Logging.log(Level.WARNING, "Journaleintrag " + entry + " konnte nicht angewandt werden", e);
+            }
+        }
+        Logging.log(Level.INFO, applied + " von " + entries.size() + " Einträgen aus \"" + JOURNAL_PATH
+                + "\" nachgespielt");
+        if (applied > 0 && Constants.SHARDED_STORAGE)
+            shards.touchAll(root);
+
+        // Das Journal wird beim nächsten Speichern in die XML-Datei übernommen
+        saveScheduler.schedule();
+    }
+
+    /**
+     * Anwenden eines einzelnen Journaleintrags auf den Themenbaum im Speicher. Einträge, die bereits im Themenbaum
+     * enthalten sind oder nicht mehr passen, werden übersprungen.
+     *
+     * @param entry Anzuwendender Eintrag
+     * @return ob der Themenbaum verändert wurde
+     * @since 1.0
+     */
+    private boolean apply(TopicTreeJournal.Entry entry) {
+        String[] args = entry.arguments;
+        switch (entry.operation) {
+            case ADD_NODE: {
+                Topic parent = args[1] != null ? titleIndex.get(args[1]) : root;
+                if (parent == null || titleIndex.containsKey(args[0]))
+                    return false;
+                Topic node = new Topic(args[0]);
+                insertNodeAlphabetically(node, parent);
+                index(node);
+                return true;
+            }
+            case MOVE_NODE: {
+                Topic node = titleIndex.get(args[0]);
+                Topic to = args[1] != null ? titleIndex.get(args[1]) : root;
+                if (node == null || to == null || node.getParent() == to)
+                    return false;
+                for (Topic ancestor = to; ancestor != null; ancestor = ancestor.getParent())
+                    if (ancestor == node)
+                        return false;
+                insertNodeAlphabetically(node, to);
+                return true;
+            }
+            case REMOVE_NODE: {
+                Topic node = titleIndex.get(args[0]);
+                if (node == null)
+                    return false;
+                node.detach();
+                unindex(node);
+                return true;
+            }
+            case RENAME_NODE: {
+                Topic node = titleIndex.get(args[0]);
+                if (node == null || titleIndex.containsKey(args[1]))
+                    return false;
+                retitle(node, args[1]);
+                return true;
+            }
+            case ADD_CONTENT: {
+                Topic parent = args[0] != null ? titleIndex.get(args[0]) : root;
+                if (parent == null || parent.indexOfContent(args[2]) != -1)
+                    return false;
+                parent.getContents().add(new Content(Content.Type.forName(args[1]), args[2], args[3]));
+                return true;
+            }
+            case RENAME_CONTENT: {
+                Topic parent = args[0] != null ? titleIndex.get(args[0]) : root;
+                int index = parent != null ? parent.indexOfContent(args[1]) : -1;
+                if (index == -1)
+                    return false;
+                Content old = parent.getContents().get(index);
+                parent.getContents().set(index, new Content(old.getType(), args[2], args[3]));
+                return true;
+            }
+            case REMOVE_CONTENT: {
+                Topic parent = args[0] != null ? titleIndex.get(args[0]) : root;
+                int index = parent != null ? parent.indexOfContent(args[1]) : -1;
+                if (index == -1)
+                    return false;
+                parent.getContents().remove(index);
+                return true;
+            }
+            case ORDER_CONTENTS: {
+                Topic parent = args[0] != null ? titleIndex.get(args[0]) : root;
+                if (parent == null)
+                    return false;
+                // Inhalte in der festgehaltenen Reihenfolge, nicht genannte Inhalte bleiben am Ende
+                List<Content> contents = parent.getContents();
+                List<Content> ordered = new ArrayList<>(contents.size());
+                for (int i = 1; i < args.length; i++) {
+                    int index = parent.indexOfContent(args[i]);
+                    if (index != -1 && !ordered.contains(contents.get(index)))
+                        ordered.add(contents.get(index));
+                }
+                for (Content content : contents)
+                    if (!ordered.contains(content))
+                        ordered.add(content);
+                contents.clear();
+                contents.addAll(ordered);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Einlesen einer XML-Datei des Themenbaums.
+     * <p>
+     * Zuerst wird der streamende {@link TopicTreeReader} versucht. Schlägt dieser fehl, wird die Datei als
+     * Rückfallebene noch einmal vollständig als DOM mit dem {@link XmlFileHandler} eingelesen.
+     *
+     * @param path Pfad der Datei
+     * @return Wurzel des eingelesenen Themenbaums
+     * @throws IOException wenn die Datei auf keine der beiden Arten eingelesen werden konnte
+     * @since 1.0
+     */
+    private static Topic readTopicTree(Path path) throws IOException {
+        try {
+            return TopicTreeReader.read(path);
+        } catch (IOException e1) {
+            Logging.log(Level.WARNING, "Datei \"" + path + "\" konnte nicht gestreamt werden, versuche DOM", e1);
+            try {
+                return new XmlFileHandler(path.toString()).toTopicTree();
+            } catch (IOException e2) {
+                e2.addSuppressed(e1);
+                throw e2;
+            }
+        }
+    }
+
+    /**
+     * Aufbau der Titelindizes aus dem geladenen Themenbaum.
+     *
+     * @since 1.0
+     */
+    private void buildIndex() {
+        titleIndex.clear();
+        normalizedTitleIndex.clear();
+        for (Topic child : root.getChildren())
+            reindex(child);
+        Logging.log(Level.INFO, titleIndex.size() + " Knoten indiziert");
+    }
+
+    /**
+     * Aufnahme eines Knotens in die Titelindizes
+     *
+     * @param topic Aufzunehmender Knoten
+     * @since 1.0
+     */
+    private void index(Topic topic) {
+        titleIndex.put(topic.getTitle(), topic);
+        normalizedTitleIndex.put(FileUtils.normalize(topic.getTitle()), topic);
+    }
+
+    /**
+     * Entfernen eines Knotens samt aller Unterknoten aus den Titelindizes
+     *
+     * @param topic Zu entfernender Knoten
+     * @since 1.0
+     */
+    private void unindex(Topic topic) {
+        titleIndex.remove(topic.getTitle(), topic);
+        normalizedTitleIndex.remove(FileUtils.normalize(topic.getTitle()), topic);
+
+        for (Topic child : topic.getChildren())
+            unindex(child);
+    }
+
+    /**
+     * Wiederaufnahme eines Knotens samt aller Unterknoten in die Titelindizes
+     *
+     * @param topic Aufzunehmender Knoten
+     * @since 1.0
+     */
+    private void reindex(Topic topic) {
+        index(topic);
+        for (Topic child : topic.getChildren())
+            reindex(child);
+    }
+
     /**
      * Speichern der Daten als XML-Datei im Pfad {@value #ORIGINAL_PATH} relativ zum Arbeitsverzeichnis.
-     * Wird von den die XML-Datei bearbeitenden Methoden selbst aufgerufen.
+     * Die Datei wird dabei atomar ersetzt, sodass ein Absturz oder eine volle Platte sie nie beschädigen kann.
+     * <p>
+     * Der Themenbaum wird unter Sperre in den Speicher geschrieben, die eigentliche Dateioperation erfolgt danach
+     * ohne Sperre, damit Änderungen währenddessen nicht blockiert werden. Unter derselben Sperre wird das Journal
+     * beiseitegelegt und nach erfolgreichem Speichern gelöscht, da es dann vollständig in der XML-Datei enthalten ist.
+     *
+     * @throws IOException wenn das Speichern nicht erfolgreich war
+     * @since 1.0
+     */
+    private void saveFile() throws IOException {
+        if (Constants.SHARDED_STORAGE)
+            saveShards();
+        else
+            saveXml();
+
+        try {
+            journal.finishCompaction();
+        } catch (IOException e) {
+            // Unkritisch, die Einträge sind ja bereits in der XML-Datei enthalten und werden beim Laden übersprungen
+            Logging.log(Level.WARNING, "Beiseitegelegtes Journal konnte nicht gelöscht werden", e);
+        }
+        backupService.saved();
+    }
+
+    /**
+     * Speichern des Themenbaums als einzelne XML-Datei samt binärem Zwischenspeicher.
      *
-     * @throws TransformerException wenn das Transformieren nicht erfolgreich war
-     * @throws IOException          wenn das Speichern nicht erfolgreich war
+     * @throws IOException wenn das Speichern nicht erfolgreich war
      * @since 1.0
      */
-    private void saveFile() throws IOException, TransformerException {
+    private void saveXml() throws IOException {
+        byte[] data, tree;
         try {
-            xmlHandler.saveDocTo(ORIGINAL_PATH);
+            // Lesen genügt, Änderungen sind damit trotzdem ausgeschlossen
+            lock.readLock().lock();
+            try {
+                data = TopicTreeWriter.toByteArray(root);
+                journal.rotate(data);
+                // Der Zwischenspeicher muss denselben Stand wie die XML-Datei enthalten, sein Fehlen ist aber
+                // unkritisch und darf das Speichern nicht verhindern
+                tree = encodeCache();
+            } finally {
+                lock.readLock().unlock();
+            }
+            FileUtils.writeAtomically(directory.resolve(ORIGINAL_PATH), data);
             Logging.log(Level.INFO, "Speichern von \"" + ORIGINAL_PATH + "\" erfolgreich abgeschlossen");
-        } catch (IOException | TransformerException e) {
+
+            // Eine vorher aufgeteilte Speicherung ist nun veraltet und darf nicht mehr geladen werden
+            if (shards.exists())
+                shards.remove();
+        } catch (IOException e) {
             Logging.log(Level.WARNING, "Fehler beim Speichern von \"" + ORIGINAL_PATH + "\"", e);
             // Schmeißt eine IOException, um den aufrufenden Methoden mitzuteilen,
             // dass die Datei nicht gespeichert werden konnte
             throw e;
         }
+
+        if (tree == null)
+            return;
+        try {
+            updateCache(data, tree);
+        } catch (IOException e) {
+            // Unkritisch, beim nächsten Start wird dann eben die XML-Datei geparst
+            Logging.log(Level.WARNING, "Zwischenspeicher \"" + CACHE_PATH + "\" konnte nicht aktualisiert werden", e);
+        }
+    }
+
+    /**
+     * Erzeugen des binären Zwischenspeichers aus dem aktuellen Themenbaum. Muss unter derselben Sperre aufgerufen
+     * werden, unter der auch die XML-Datei erzeugt wird. Fehler werden nur geloggt.
+     *
+     * @return Inhalt des Zwischenspeichers oder {@code null}, wenn er nicht erzeugt werden konnte
+     * @since 1.0
+     */
+    private byte[] encodeCache() {
+        try {
+            return TopicTreeCache.encode(root);
+        } catch (IOException | RuntimeException e) {
+            // Unkritisch, beim nächsten Start wird dann eben die XML-Datei geparst
+            Logging.log(Level.WARNING, "Zwischenspeicher \"" + CACHE_PATH + "\" konnte nicht erzeugt werden", e);
+            return null;
+        }
+    }
+
+    /**
+     * Speichern des Themenbaums aufgeteilt in einzelne Dateien. Es werden nur die veränderten Teile geschrieben.
+     *
+     * @throws IOException wenn das Speichern nicht erfolgreich war
+     * @since 1.0
+     */
+    private void saveShards() throws IOException {
+        try {
+            TopicShards.Pending pending;
+            // Lesen genügt, Änderungen sind damit trotzdem ausgeschlossen
+            lock.readLock().lock();
+            try {
+                pending = shards.render(root);
+                journal.rotate(pending.manifest);
+            } finally {
+                lock.readLock().unlock();
+            }
+            shards.write(pending);
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "Fehler beim Speichern von \"" + SHARDS_PATH + "\"", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Erzeugen der vollständigen XML-Datei aus dem aktuellen Themenbaum, z.B. für Sicherungen.
+     *
+     * @return Inhalt der XML-Datei
+     * @since 1.0
+     */
+    private byte[] renderXml() {
+        lock.readLock().lock();
+        try {
+            return TopicTreeWriter.toByteArray(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Markieren eines Knotens als verändert. Sein Stand und der seiner Vorfahren werden beim nächsten Veröffentlichen
+     * neu erzeugt und bei aufgeteilter Speicherung wird der Teil, in dem er liegt, neu geschrieben.
+     *
+     * @param topic Veränderter Knoten
+     * @see TopicShards#touch(Topic)
+     * @since 1.0
+     */
+    private void touch(Topic topic) {
+        topic.invalidateSnapshot();
+        if (Constants.SHARDED_STORAGE)
+            shards.touch(topic);
+    }
+
+    /**
+     * Übernehmen der Änderungen einer Transaktion. Wird von {@link #execute(TopicTreeTransaction)} aufgerufen.
+     * <p>
+     * Je nach {@link Constants#WRITE_BEHIND} wird sofort gespeichert oder die Änderungen werden gemeinsam an das
+     * Journal angehängt und das Speichern der XML-Datei im Hintergrund eingeplant. War dies erfolgreich, wird der neue
+     * Stand des Themenbaums veröffentlicht, siehe {@link #getSnapshot()}.
+     *
+     * @param entries Einträge der Änderungen, siehe {@link TopicTreeJournal.Operation}
+     * @throws IOException wenn das Speichern bzw. das Schreiben ins Journal oder zuvor das Speichern im Hintergrund
+     *                     fehlgeschlagen ist
+     * @since 1.0
+     */
+    private void commit(List<TopicTreeJournal.Entry> entries) throws IOException {
+        backupService.changed(entries.size());
+        if (Constants.WRITE_BEHIND) {
+            // Vor dem Journal, sonst bliebe die zurückgerollte Änderung dort stehen
+            saveScheduler.throwFailure();
+            journal.append(entries);
+            saveScheduler.schedule();
+        } else {
+            // Über den Planer, damit sich dies nie mit einem Speichervorgang im Hintergrund überschneidet
+            saveScheduler.saveNow();
+        }
+
+        // Erst jetzt, denn schlägt das Übernehmen fehl, wird die Transaktion wieder rückgängig gemacht
+        publish();
+    }
+
+    /**
+     * Veröffentlichen des aktuellen Standes des Themenbaums für alle lesenden Methoden. Muss unter der Schreibsperre
+     * oder vor der ersten Verwendung des Kontrolleurs aufgerufen werden.
+     *
+     * @since 1.0
+     */
+    private void publish() {
+        published = new SnapshotIndex(TopicSnapshot.of(root), directory.resolve(TOPICS_PATH));
+    }
+
+    /**
+     * Ermitteln des aktuellen unveränderlichen Standes des gesamten Themenbaums.
+     * <p>
+     * Der Stand kann ohne Sperre und auch aus anderen Threads heraus durchlaufen werden und bleibt von späteren
+     * Änderungen unberührt. Er ist daher für länger laufende Arbeiten im Hintergrund gedacht, die eine in sich
+     * stimmige Sicht auf den Themenbaum brauchen.
+     *
+     * @return Stand der Wurzel des Themenbaums
+     * @since 1.0
+     */
+    public TopicSnapshot getSnapshot() {
+        return published.getRoot();
+    }
+
+    /**
+     * Sofortiges Speichern aller noch nicht gespeicherten Änderungen, z.B. vor dem Beenden des Programms.
+     *
+     * @throws IOException wenn das Speichern oder ein vorheriger Speichervorgang im Hintergrund fehlgeschlagen ist
+     * @since 1.0
+     */
+    public void flush() throws IOException {
+        saveScheduler.flush();
     }
 
     /**
-     * Erstellen eines Backups der originalen Datei im Pfad {@code BACKUP_PATH} relativ zum Arbeitsverzeichnis
+     * Abschließen aller ausstehenden Arbeiten vor dem Beenden des Programms. Noch nicht gespeicherte Änderungen
+     * werden gespeichert und ein noch nicht gesicherter Stand wird gesichert. Was noch im Papierkorb liegt, wird
+     * beim nächsten Start gelöscht.
      *
-     * @throws IOException wenn das Erstellen und nicht erfolgreich war
+     * @throws IOException wenn das Speichern fehlgeschlagen ist
      * @since 1.0
      */
-    public static void backupFile() throws IOException {
+    public void close() throws IOException {
         try {
-            Files.copy(Paths.get(ORIGINAL_PATH), Paths.get(BACKUP_PATH), StandardCopyOption.REPLACE_EXISTING);
-            Logging.log(Level.INFO, "Erstellen eines Backups von \"" + ORIGINAL_PATH + "\" in \"" + BACKUP_PATH
-                    + "\" erfolgreich abgeschlossen");
-        } catch (IOException e) {
-            Logging.log(Level.WARNING, "Fehler beim Erstellen der Backupdatei \"" + BACKUP_PATH + "\"", e);
-            // Schmeißt eine IOException, um den aufrufenden Klassen mitzuteilen,
-            // dass die Datei nicht gesichert werden konnte; diese sollen dann weiter verfahren!
-            throw e;
+            flush();
+        } finally {
+            backupService.close();
+            trash.close();
         }
     }
 
@@ -240,19 +967,19 @@ public class TopicTreeController {
      * Neuerstellung der XML-Datei im Pfad {@value #ORIGINAL_PATH} und des Topic-Ordners im Pfad {@value #TOPICS_PATH}
      * relativ zum Arbeitsverzeichnis. Bereits existierende Dateien/Ordner werden mit der Endung .old erweitert.
      * <p>
-     * Kann auch aufgerufen werden, wenn der {@code TopicTreeController} noch nicht instanziert wurde,
+     * Kann auch aufgerufen werden, wenn der Themenbaum noch nicht geladen wurde,
      * damit das Programm trotz Fehlen der XML-Datei + Backup funktionstüchtig bleibt.
      * </p>
      *
      * @throws IOException wenn das Erstellen nicht erfolgreich war
      * @since 1.0
      */
-    private static void recreateFile() throws IOException {
+    private void recreateFile() throws IOException {
 
         // Erstellen der XML-Datei
-        Path xmlPath = Paths.get(ORIGINAL_PATH);
+        Path xmlPath = directory.resolve(ORIGINAL_PATH);
         if (xmlPath.toFile().exists()) {
-            FileUtils.move(xmlPath, Paths.get(ORIGINAL_PATH + ".old"));
+            FileUtils.move(xmlPath, directory.resolve(ORIGINAL_PATH + ".old"));
             Logging.log(Level.WARNING, "Existierende " + ORIGINAL_PATH + "-Datei gefunden " +
                     "und vor Neuerstellung umbenannt");
         }
@@ -268,10 +995,25 @@ public class TopicTreeController {
             throw e;
         }
 
+        // Eine alte aufgeteilte Speicherung würde sonst der neuen Datei vorgezogen
+        Path shardsPath = directory.resolve(SHARDS_PATH);
+        if (shardsPath.toFile().exists()) {
+            FileUtils.move(shardsPath, directory.resolve(SHARDS_PATH + ".old"));
+            Logging.log(Level.WARNING, "Existierende " + SHARDS_PATH + "-Datei vor Neuerstellung umbenannt");
+        }
+
+        // Ein altes Journal gehört nicht zur neuen Datei
+        for (Path journalPath : journal.getPaths()) {
+            if (journalPath.toFile().exists()) {
+                FileUtils.move(journalPath, Paths.get(journalPath + ".old"));
+                Logging.log(Level.WARNING, "Existierendes Journal \"" + journalPath + "\" vor Neuerstellung umbenannt");
+            }
+        }
+
         // Erstellen des Themenordners
-        Path topicsPath = Paths.get(TOPICS_PATH);
+        Path topicsPath = directory.resolve(TOPICS_PATH);
         if (topicsPath.toFile().exists()) {
-            FileUtils.move(topicsPath, Paths.get(TOPICS_PATH + ".old"));
+            FileUtils.move(topicsPath, directory.resolve(TOPICS_PATH + ".old"));
             Logging.log(Level.WARNING, "Existierende " + TOPICS_PATH + "-Ordner gefunden " +
                     "und vor Neuerstellung umbenannt");
         }
@@ -287,83 +1029,116 @@ public class TopicTreeController {
      * @since 1.0
      */
     public boolean doesExist(String title) {
-        boolean exists = false;
-        String expr = "//" + TAG_NODE;
-        NodeList nodeList = xmlHandler.getNodeList(expr);
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            // Titel des Knotens
-            String anotherTitle = "";
-            Node node = nodeList.item(i);
-            if (node.getNodeType() == Node.ELEMENT_NODE)
-                anotherTitle = ((Element) node).getAttribute(ATTR_TITLE);
-            // Leerer Titel (kann gar nicht sein, da wir davon ausgehen, dass alle Knoten durch addNode erzeugt wurden)
-            if (title.isEmpty())
-                continue;
-            if (FileUtils.normalize(anotherTitle).equals(FileUtils.normalize(title)))
-                exists = true;
-        }
+        // Leerer Titel (kann gar nicht sein, da wir davon ausgehen, dass alle Knoten durch addNode erzeugt wurden)
+        boolean exists = !title.isEmpty() && published.containsNormalized(FileUtils.normalize(title));
         Logging.log(Level.INFO, "Existenz von Knoten mit Titel \"" + title + "\" überprüft: " + exists);
         return exists;
     }
 
+    /**
+     * Suchen des Knotens mit diesem Titel, der bereits im Themenbaum ist oder darin gerade im Rahmen einer
+     * Transaktion angelegt wurde. Anders als {@link #doesExist(String)} sieht dies auch noch nicht veröffentlichte
+     * Änderungen und darf daher nur unter der Sperre aufgerufen werden.
+     *
+     * @param title Zu prüfender Titel
+     * @return Knoten, dessen normalisierter Titel gleich ist, oder {@code null}
+     * @since 1.0
+     */
+    private Topic findCollision(String title) {
+        return title.isEmpty() ? null : normalizedTitleIndex.get(FileUtils.normalize(title));
+    }
+
     /**
      * Suchen eines Knoten anhand seines Titels. Ist der Titel {@code NULL}, dann wird die Wurzel zurückgegeben.
      *
      * @param title Titel des Knoten
      * @return Der Knoten
+     * @throws IllegalArgumentException wenn es keinen Knoten mit diesem Titel gibt. Innerhalb einer Transaktion wird
+     *                                  diese dann rückgängig gemacht.
      */
-    private Node getNode(String title) {
-        String expr = title != null ? "//" + TAG_NODE + "[@" + ATTR_TITLE + "='" + title + "']" : "//" + TAG_ROOT;
-        Node node = xmlHandler.getNode(expr);
+    private Topic getNode(String title) {
+        Topic node = title != null ? titleIndex.get(title) : root;
 
-        if (node == null) {
-            //Darf und wird nicht vorkommen. Sollte es doch -> Loggen und das Programm schließen
-            NullPointerException e = new NullPointerException("Es wurde nach einem nicht vorhanden Knoten " +
-                    "gefordert: \"" + title + "\"");
-            new ErrorAlert(e).showAndWait();
-            Logging.log(Level.SEVERE, Constants.FATAL_ERROR_MESSAGE, e);
-            throw new InternalError(Constants.FATAL_ERROR_MESSAGE, e);
-        }
+        if (node == null)
+            throw unknownNode(title);
+        return node;
+    }
+
+    /**
+     * Suchen eines Knoten im veröffentlichten Stand anhand seines Titels. Ist der Titel {@code NULL}, dann wird die
+     * Wurzel zurückgegeben.
+     *
+     * @param title Titel des Knoten
+     * @return Stand des Knotens
+     * @throws IllegalArgumentException wenn es keinen Knoten mit diesem Titel gibt
+     * @since 1.0
+     */
+    private TopicSnapshot getPublishedNode(String title) {
+        TopicSnapshot node = published.get(title);
+
+        if (node == null)
+            throw unknownNode(title);
         return node;
     }
 
     /**
-     * Ermitteln des Pfads des Ordners eines bestimmten Knotens relativ zum Arbeitsverzeichnis
+     * Loggen der Anfrage nach einem nicht vorhandenen Knoten
+     *
+     * @param title Titel des Knoten
+     * @return Auszulösende Ausnahme
+     * @since 1.0
+     */
+    private static IllegalArgumentException unknownNode(String title) {
+        //Darf und wird nicht vorkommen. Sollte es doch -> Loggen und die Änderung abbrechen
+        IllegalArgumentException e = new IllegalArgumentException("Es wurde nach einem nicht vorhanden Knoten " +
+                "gefordert: \"" + title + "\"");
+        Logging.log(Level.SEVERE, Constants.FATAL_ERROR_MESSAGE, e);
+        return e;
+    }
+
+    /**
+     * Ermitteln des Pfads des Ordners eines bestimmten Knotens relativ zum Arbeitsverzeichnis bzw. innerhalb des bei
+     * {@link #open(Path)} angegebenen Ordners
      *
      * @param title Titel des Knotens
      * @return Pfad des Ordners des Knotens relativ zum Arbeitsverzeichnis
      * @since 1.0
      */
     public String locateDirectory(String title) {
-        String path = locateDirectory(getNode(title)) + File.separator;
+        SnapshotIndex index = published;
+        if (index.get(title) == null)
+            throw unknownNode(title);
+        String path = index.getDirectory(title) + File.separator;
         Logging.log(Level.INFO, "Pfad zum Ordner des Knotens \"" + title + "\" gefunden.");
         return path;
     }
 
     /**
-     * Rekursives Finden von Pfaden des Ordners eines Knoten
+     * Rekursives Finden von Pfaden des Ordners eines Knoten. Der Pfad wird am Knoten zwischengespeichert, bis sich
+     * dessen Titel oder Position oder die eines Vorfahren ändert, siehe {@link Topic#invalidateDirectory()}.
      *
      * @param node Der Ausgangsknoten
      * @return Pfad zum Ordner des Knotens ausgehend vom {@value TOPICS_PATH}-Ordner
      */
-    private String locateDirectory(Node node) {
+    private Path locateDirectory(Topic node) {
         if (node == null)
-            return "";
+            return Paths.get("");
 
-        if (node.getNodeName().equals(TAG_ROOT))
-            return TOPICS_PATH;
+        Path path = node.getDirectory();
+        if (path != null)
+            return path;
 
-        // Titel des Knotens
-        String title = "";
-        if (node.getNodeType() == Node.ELEMENT_NODE)
-            title = ((Element) node).getAttribute(ATTR_TITLE);
-
-        // Leerer Titel (kann gar nicht sein, da wir davon ausgehen, dass alle Knoten durch addNode erzeugt wurden)
-        if (title.isEmpty())
-            return "";
+        if (node.isRoot()) {
+            path = directory.resolve(TOPICS_PATH);
+        } else if (node.getTitle().isEmpty()) {
+            // Leerer Titel (kann gar nicht sein, da wir davon ausgehen, dass alle Knoten durch addNode erzeugt wurden)
+            return Paths.get("");
+        } else {
+            path = locateDirectory(node.getParent()).resolve(FileUtils.normalize(node.getTitle()));
+        }
 
-        String path = FileSystems.getDefault().getSeparator() + FileUtils.normalize(title);
-        return locateDirectory(node.getParentNode()) + path;
+        node.setDirectory(path);
+        return path;
     }
 
     /**
@@ -374,19 +1149,11 @@ public class TopicTreeController {
      * @since 1.0
      */
     public String[] getChildren(String title) {
-
-        String expr = title != null ? "//" + TAG_NODE + "[@" + ATTR_TITLE + "='" + title + "']/" + TAG_NODE
-                : "//" + TAG_ROOT + "/" + TAG_NODE;
-        NodeList nodeList = xmlHandler.getNodeList(expr);
-        String[] result = new String[nodeList.getLength()];
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node node = nodeList.item(i);
-
+        List<TopicSnapshot> children = getPublishedNode(title).getChildren();
+        String[] result = new String[children.size()];
+        for (int i = 0; i < result.length; i++) {
             // Titel des Knotens
-            String nodeTitle = "";
-            if (node.getNodeType() == Node.ELEMENT_NODE)
-                nodeTitle = ((Element) node).getAttribute(ATTR_TITLE);
-
+            String nodeTitle = children.get(i).getTitle();
 
             // Leerer Titel (kann gar nicht sein, da wir davon ausgehen, dass alle Knoten durch addNode erzeugt wurden)
             if (nodeTitle.isEmpty())
@@ -395,7 +1162,101 @@ public class TopicTreeController {
             result[i] = nodeTitle;
         }
         return result;
+    }
+
+    /**
+     * Ermitteln der Anzahl der direkten Kind-Knoten eines bestimmten Knotens, ohne deren Titel herauszugeben
+     *
+     * @param title Titel des Knotens. Wenn {@code NULL}, dann wird die Wurzel verwendet.
+     * @return Anzahl der Kinder
+     * @since 1.0
+     */
+    public int getChildCount(String title) {
+        return getPublishedNode(title).getChildren().size();
+    }
+
+    /**
+     * Beginn einer Transaktion, die beliebig viele Änderungen ganz oder gar nicht und mit nur einmaligem Speichern
+     * ausführt, z.B. für umfangreiche Umstrukturierungen.
+     *
+     * @return Neue, leere Transaktion
+     * @since 1.0
+     */
+    public TopicTreeTransaction beginTransaction() {
+        return new TopicTreeTransaction(this);
+    }
+
+    /**
+     * Ausführen einer Transaktion: zuerst alle Änderungen im Speicher, dann alle Operationen auf Ordnern und Dateien
+     * und zuletzt ein einziges Übernehmen. Schlägt etwas davon fehl, wird alles rückgängig gemacht.
+     *
+     * @param transaction Auszuführende Transaktion
+     * @throws TitleCollisionException wenn eine Änderung wegen eines bereits vergebenen Titels nicht möglich ist
+     * @throws IOException             wenn eine Operation auf Ordnern und Dateien oder das Speichern fehlschlägt
+     * @since 1.0
+     */
+    void execute(TopicTreeTransaction transaction) throws TitleCollisionException, IOException {
+        if (Constants.WRITE_BEHIND) {
+            executeLocked(transaction);
+        } else {
+            // Beim sofortigen Speichern in commit() muss die Sperre des Speicherns vor der des Themenbaums kommen
+            synchronized (saveScheduler.getSaveLock()) {
+                executeLocked(transaction);
+            }
+        }
+    }
+
+    /**
+     * Ausführen einer Transaktion unter der Schreibsperre des Themenbaums
+     *
+     * @param transaction Auszuführende Transaktion
+     * @throws TitleCollisionException wenn eine Änderung wegen eines bereits vergebenen Titels nicht möglich ist
+     * @throws IOException             wenn eine Operation auf Ordnern und Dateien oder das Speichern fehlschlägt
+     * @see #execute(TopicTreeTransaction)
+     * @since 1.0
+     */
+    private void executeLocked(TopicTreeTransaction transaction) throws TitleCollisionException, IOException {
+        lock.writeLock().lock();
+        try {
+            try {
+                for (TopicTreeTransaction.Step step : transaction.getSteps())
+                    step.apply();
+                transaction.performFileActions();
+                if (!transaction.getEntries().isEmpty())
+                    commit(transaction.getEntries());
+            } catch (TitleCollisionException | IOException | RuntimeException | Error e) {
+                // Auch bei Fehlern zurückrollen, sonst bleiben die bisherigen Schritte ohne Journaleintrag im Speicher
+                transaction.rollback(e);
+                throw e;
+            }
+            transaction.cleanUp();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Ordner, in dem die XML-Datei, der Topic-Ordner und alle übrigen Dateien liegen
+     * @since 1.0
+     */
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return Ablage der Dateien nach ihrer Prüfsumme oder {@code null}, wenn die Dateien einfach kopiert werden
+     * @since 1.0
+     */
+    ContentStore getContentStore() {
+        return contentStore;
+    }
 
+    /**
+     * @return Papierkorb, über den entfernte Ordner und Dateien im Hintergrund gelöscht werden
+     * @since 1.0
+     */
+    Trash getTrash() {
+        return trash;
     }
 
     /**
@@ -405,93 +1266,54 @@ public class TopicTreeController {
      * @param parent Titel des gewünschten Elternknotens. Wenn {@code NULL}, dann wird die Wurzel verwendet.
      * @throws TitleCollisionException wenn bereits ein Knoten mit diesem Titel existiert
      * @throws IOException             wenn Erstellen des Ordners fehlschlägt
-     * @throws TransformerException    wenn es einen Fehler beim Speichern der XML gab
      * @since 1.0
      */
-    public void addNode(String title, String parent) throws TitleCollisionException, IOException, TransformerException {
-        if (doesExist(title))
-            throw new TitleCollisionException("Knoten \"" + title + "\" existiert bereits!");
-
-        //Knoten wird unter dem gefundenen Elternknoten erzeugt
-        addNode(title, getNode(parent));
-        Logging.log(Level.INFO, String.format("Knoten \"%s\" unter %s eingefügt", title,
-                parent == null ? "der Wurzel" : "\"" + parent + "\""));
+    public void addNode(String title, String parent) throws TitleCollisionException, IOException {
+        beginTransaction().addNode(title, parent).commit();
     }
 
     /**
-     * Erstellt einen neuen Knoten (sofern Titel nicht schon vergeben) unter einem als Objekt gegebenen Eltern-Knoten
+     * Einfügen eines neuen Knotens im Rahmen einer Transaktion
      *
-     * @param title  Titel des Knotens
-     * @param parent Eltern-Knoten
-     * @throws IOException          wenn Erstellen des Ordners fehlschlägt
-     * @throws TransformerException wenn es einen Fehler beim Speichern der XML gab
+     * @param title       Titel des einzufügenden Knotens
+     * @param parent      Titel des gewünschten Elternknotens. Wenn {@code NULL}, dann wird die Wurzel verwendet.
+     * @param transaction Transaktion, in deren Rahmen eingefügt wird
+     * @throws TitleCollisionException wenn bereits ein Knoten mit diesem Titel existiert
      * @since 1.0
      */
-    private void addNode(String title, Node parent) throws IOException, TransformerException {
-        // Erstellung des Knotens
-        Element element = xmlHandler.getDocument().createElement(TAG_NODE);
-        element.setAttribute(ATTR_TITLE, title);
+    void addNode(String title, String parent, TopicTreeTransaction transaction) throws TitleCollisionException {
+        if (findCollision(title) != null)
+            throw new TitleCollisionException("Knoten \"" + title + "\" existiert bereits!");
 
-        //Fügt Knoten unter Beachtung der Alphabetischen Sortierung zum Elternknoten hinzu
-        insertNodeAlphabetically(element, parent);
-        Logging.log(Level.INFO, "Knoten \"" + title + "\" erfolgreich erstellt");
+        // Erstellung des Knotens und Einfügen unter Beachtung der alphabetischen Sortierung
+        Topic parentNode = getNode(parent);
+        Topic element = new Topic(title);
+        insertNodeAlphabetically(element, parentNode);
+        index(element);
+        touch(element);
+        transaction.applied(() -> {
+            element.detach();
+            unindex(element);
+        }, TopicTreeJournal.Operation.ADD_NODE, title, parentNode.getTitle());
 
         // Erstellung des Ordners
-        Path path = Paths.get(locateDirectory(element));
-        try {
-            Files.createDirectory(path);
-            Logging.log(Level.INFO, "Ordner des Knotens \"" + title + "\" erfolgreich erstellt");
-        } catch (IOException e) {
-            // Fehlgeschlagen, ändere XML im Speicher zurück, dann brich ab
-            parent.removeChild(element);
-            throw e;
-        }
-
-        // Speichern der XML-Datei
-        try {
-            saveFile();
-        } catch (IOException | TransformerException e) {
-            // Fehlgeschlagen, ändere XML im Speicher zurück, lösche Ordner, dann brich ab
-            parent.removeChild(element);
-            try {
-                FileUtils.delete(path);
-            } catch (IOException e1) {
-                //Fehlgeschlagen, lass (jetzt nicht mehr benötigten) Ordner in Ruhe und logge das Ganze
-                e1.addSuppressed(e);
-                Logging.log(Level.WARNING, "Ordner \"" + path.toString() + "\" ist nun unnötig, Löschen schlug " +
-                        "allerdings fehl!", e1);
-            }
-            throw e;
-        }
+        transaction.createDirectory(locateDirectory(element));
+        Logging.log(Level.INFO, String.format("Knoten \"%s\" unter %s eingefügt", title,
+                parent == null ? "der Wurzel" : "\"" + parent + "\""));
     }
 
     /**
-     * Einfügen eines Knoten alphabetisch (nach den Titeln) unter einen bestimmten Elternknoten. Ist der
-     * Knoten bereits in der XML-Datei vorhanden, so wird er vorher entfernt.
+     * Einfügen eines Knoten alphabetisch (nach den Titeln, siehe {@link TitleOrder}) unter einen bestimmten
+     * Elternknoten. Die Stelle wird per binärer Suche gefunden. Ist der Knoten bereits in der XML-Datei vorhanden,
+     * so wird er vorher entfernt.
      *
      * @param child  Einzufügender Knoten
      * @param parent Elternknoten
      */
-    private void insertNodeAlphabetically(Node child, Node parent) {
-        NodeList siblings = parent.getChildNodes(); //Zukünftige Geschwisterknoten des einzufügenden Knotens
-
-        boolean inserted = false;
-        for (int i = 0; i < siblings.getLength(); i++) {
-            Node sibling = siblings.item(i);
-            if (sibling.getNodeType() == Node.ELEMENT_NODE && child.getNodeType() == Node.ELEMENT_NODE) {
-                //Anderer Fall kann eigenlich nicht vorkommen
-                String siblingTitle = ((Element) sibling).getAttribute(ATTR_TITLE);
-                String childTitle = ((Element) child).getAttribute(ATTR_TITLE);
-                if (siblingTitle.compareToIgnoreCase(childTitle) >= 0) {
-                    parent.insertBefore(child, sibling);
-                    inserted = true;
-                    break;
-                }
-            }
-        }
-
-        if (!inserted)
-            parent.appendChild(child);
+    private void insertNodeAlphabetically(Topic child, Topic parent) {
+        child.detach();
+        int index = TitleOrder.insertionIndex(parent.getChildren(), child.getSortKey(), Topic::getSortKey);
+        parent.insertChild(index, child);
     }
 
     /**
@@ -500,114 +1322,94 @@ public class TopicTreeController {
      * @param from Titel des zu verschiebenden Knotens
      * @param to   Titel des neuen Elternknotens (Darf nicht {@code from} sein). Wenn {@code NULL}, dann wird die Wurzel
      *             verwendet.
-     * @throws TitleCollisionException wenn {@code from} die Wurzel {@value TAG_ROOT} ist
-     *                                 oder {@code from} gleich {@code to} ist
+     * @throws TitleCollisionException wenn {@code from} die Wurzel {@value TAG_ROOT} ist, {@code from} gleich
+     *                                 {@code to} ist oder {@code to} unterhalb von {@code from} liegt
      * @throws IOException             wenn Verschieben des Ordners fehlschlägt
-     * @throws TransformerException    wenn es einen Fehler beim Speichern der XML gab
      * @since 1.0
      */
-    public void moveNode(String from, String to) throws TitleCollisionException, IOException, TransformerException {
+    public void moveNode(String from, String to) throws TitleCollisionException, IOException {
+        beginTransaction().moveNode(from, to).commit();
+    }
+
+    /**
+     * Verschieben eines Knotens im Rahmen einer Transaktion
+     *
+     * @param from        Titel des zu verschiebenden Knotens
+     * @param to          Titel des neuen Elternknotens (Darf nicht {@code from} sein). Wenn {@code NULL}, dann wird
+     *                    die Wurzel verwendet.
+     * @param transaction Transaktion, in deren Rahmen verschoben wird
+     * @throws TitleCollisionException wenn {@code from} die Wurzel {@value TAG_ROOT} ist, {@code from} gleich
+     *                                 {@code to} ist oder {@code to} unterhalb von {@code from} liegt
+     * @since 1.0
+     */
+    void moveNode(String from, String to, TopicTreeTransaction transaction) throws TitleCollisionException {
         if (from.equals(to))
             throw new TitleCollisionException("from und to dürfen nicht gleich sein!");
 
-        // Verschieben des Knotens unter den Elternknoten
-        moveNode(getNode(from), getNode(to));
+        Topic node = getNode(from);
+        Topic target = getNode(to);
+        if (node.isRoot())
+            throw new TitleCollisionException("Knoten darf nicht die Wurzel \"" + TAG_ROOT + "\" sein!");
+        for (Topic ancestor = target; ancestor != null; ancestor = ancestor.getParent())
+            if (ancestor == node)
+                throw new TitleCollisionException("to darf nicht unterhalb von from liegen!");
+
+        // Die Titelindizes bleiben gültig, da sich nur die Position des Knotens ändert
+        Path oldPath = locateDirectory(node);
+        Topic oldParent = node.getParent();
+        touch(node);
+        insertNodeAlphabetically(node, target);
+        touch(node);
+        transaction.applied(() -> insertNodeAlphabetically(node, oldParent),
+                TopicTreeJournal.Operation.MOVE_NODE, node.getTitle(), target.getTitle());
+
+        // Verschieben des Ordners
+        transaction.move(oldPath, locateDirectory(node));
         Logging.log(Level.INFO, String.format("Knoten \"%s\" unter %s verschoben", from,
                 to == null ? "die Wurzel" : "\"" + to + "\""));
     }
 
     /**
-     * Verschieben einen als Objekt gegebenen Knoten unter einen anderen als Objekt gegebenen Knoten
+     * Entfernen eines bestimmten Knotens mitsamt seinem Ordner
      *
-     * @param node Zu verschiebender Knoten (Darf nicht Wurzel sein)
-     * @param to   Neuer Elternknoten (Darf nicht {@code node} sein)
-     * @throws TitleCollisionException wenn {@code node} die Wurzel {@value TAG_ROOT} ist
-     * @throws IOException             wenn Verschieben des Ordners fehlschlägt
-     * @throws TransformerException    wenn es einen Fehler beim Speichern der XML gab
+     * @param title Titel des zu entfernenden Knotens
+     * @throws IOException          wenn Entfernen des Ordners fehlschlägt
      * @since 1.0
      */
-    private void moveNode(Node node, Node to) throws TitleCollisionException, IOException, TransformerException {
-        // Überprüfung auf invalide Parameter
-        if (node.getNodeName().equals(TAG_ROOT))
-            throw new TitleCollisionException("Knoten darf nicht die Wurzel \"" + TAG_ROOT + "\" sein!");
-
-        Path oldPath = Paths.get(locateDirectory(node));
-        Node from = node.getParentNode();
-        insertNodeAlphabetically(node, to);
-
-        // Kopieren des Ordners
-        Path newPath = Paths.get(locateDirectory(node));
+    public void removeNode(String title) throws IOException {
         try {
-            FileUtils.copy(oldPath, newPath);
-        } catch (IOException e) {
-            //Fehlgeschlagen, änder XML im Speicher zurück, dann brich ab
-            insertNodeAlphabetically(node, from);
-            throw e;
-        }
-
-        // Speichern der XML-Datei
-        try {
-            saveFile();
-        } catch (IOException | TransformerException e) {
-            //Fehlgeschlagen, ändere XML im Speicher zurück, lösche kopierten Ordner, dann brich ab
-            insertNodeAlphabetically(node, from);
-            try {
-                FileUtils.delete(newPath);
-            } catch (IOException e1) {
-                //Fehlgeschlagen, lass (jetzt nicht mehr benötigten) Ordner in Ruhe und logge das Ganze
-                e1.addSuppressed(e);
-                Logging.log(Level.WARNING, "Ordner \"" + newPath.toString() + "\" ist nun unnötig, Löschen schlug " +
-                        "allerdings fehl!", e1);
-            }
-            throw e;
-        }
-
-        // Lösche Originalen Ordner
-        try {
-            FileUtils.delete(oldPath);
-        } catch (IOException e) {
-            //Fehlgeschlagen, lass (jetzt nicht mehr benötigten) Ordner in Ruhe und logge das Ganze
-            Logging.log(Level.WARNING, "Ordner \"" + newPath.toString() + "\" ist nun unnötig, Löschen schlug " +
-                    "allerdings fehl!", e);
+            beginTransaction().removeNode(title).commit();
+        } catch (TitleCollisionException e) {
+            // Kann beim Entfernen nicht auftreten
+            throw new InternalError(e);
         }
     }
 
     /**
-     * Entfernen eines bestimmten Knotens mitsamt seinem Ordner
+     * Entfernen eines Knotens im Rahmen einer Transaktion
      *
-     * @param title Titel des zu entfernenden Knotens
-     * @throws TransformerException wenn es einen Fehler beim Speichern der XML gab
-     * @throws IOException          wenn Entfernen des Ordners fehlschlägt
+     * @param title       Titel des zu entfernenden Knotens
+     * @param transaction Transaktion, in deren Rahmen entfernt wird
      * @since 1.0
      */
-    public void removeNode(String title) throws IOException, TransformerException {
-
+    void removeNode(String title, TopicTreeTransaction transaction) {
         // Ermitteln des Knotens
-        Node node = getNode(title);
-        Node parentNode = node.getParentNode();
-        Path path = Paths.get(locateDirectory(node));
+        Topic node = getNode(title);
+        Topic parentNode = node.getParent();
+        Path path = locateDirectory(node);
 
         // Entfernen des Knotens
-        parentNode.removeChild(node);
-
-        // Speichern der XML-Datei
-        try {
-            saveFile();
-        } catch (IOException | TransformerException e) {
-            //Fehlgeschlagen, ändere XML im Speicher zurück, dann brich ab
+        touch(node);
+        node.detach();
+        unindex(node);
+        transaction.applied(() -> {
             insertNodeAlphabetically(node, parentNode);
-            throw e;
-        }
+            reindex(node);
+        }, TopicTreeJournal.Operation.REMOVE_NODE, title);
 
         // Entfernen des Ordners
-        try {
-            FileUtils.delete(path);
-            Logging.log(Level.INFO, "Knoten \"" + title + "\" erfolgreich entfernt");
-        } catch (IOException e) {
-            // Fehlgeschlagen, lass (jetzt nicht mehr benötigten) Ordner in Ruhe und Logge das Ganze
-            Logging.log(Level.WARNING, "Ordner \"" + path.toString() + "\" ist nun unnötig, Löschen schlug " +
-                    "allerdings fehl!", e);
-        }
+        transaction.remove(path);
+        Logging.log(Level.INFO, "Knoten \"" + title + "\" entfernt");
     }
 
     /**
@@ -615,80 +1417,77 @@ public class TopicTreeController {
      *
      * @param from Ursprünglicher Titel
      * @param to   neuer Titel
-     * @throws IOException          wenn Umbennenen des Ordners fehlschlägt
-     * @throws TransformerException wenn es einen Fehler beim Speichern der XML gab
+     * @throws TitleCollisionException wenn es bereits einen anderen Knoten mit dem Titel {@code to} oder einem
+     *                                 gleich normalisierten Titel gibt
+     * @throws IOException             wenn Umbennenen des Ordners fehlschlägt
      * @since 1.0
      */
-    public void renameNode(String from, String to) throws IOException, TransformerException {
-        // Ermitteln des Knotens
-        Node node = getNode(from);
-
-        Path oldPath = Paths.get(locateDirectory(node));
-
-        if (node.getNodeType() == Node.ELEMENT_NODE) //Anderer Fall kann normalerweise nicht eintreten ...
-            ((Element) node).setAttribute(ATTR_TITLE, to);
+    public void renameNode(String from, String to) throws TitleCollisionException, IOException {
+        beginTransaction().renameNode(from, to).commit();
+    }
 
-        Path newPath = Paths.get(locateDirectory(node));
-        // Kopieren des Ordners
-        try {
-            FileUtils.copy(oldPath, newPath);
-        } catch (IOException e) {
-            //Fehlgeschlagen, änder XML im Speicher zurück, dann brich ab
-            if (node.getNodeType() == Node.ELEMENT_NODE) //Anderer Fall kann normalerweise nicht eintreten ...
-                ((Element) node).setAttribute(ATTR_TITLE, from);
-            throw e;
-        }
+    /**
+     * Umbenennen eines Knotens im Rahmen einer Transaktion
+     *
+     * @param from        Ursprünglicher Titel
+     * @param to          Neuer Titel
+     * @param transaction Transaktion, in deren Rahmen umbenannt wird
+     * @throws TitleCollisionException wenn es bereits einen anderen Knoten mit dem Titel {@code to} oder einem
+     *                                 gleich normalisierten Titel gibt
+     * @since 1.0
+     */
+    void renameNode(String from, String to, TopicTreeTransaction transaction) throws TitleCollisionException {
+        // Ermitteln des Knotens
+        Topic node = getNode(from);
 
-        // Speichern der XML-Datei
-        try {
-            saveFile();
-        } catch (IOException | TransformerException e) {
-            //Fehlgeschlagen, ändere XML im Speicher zurück, lösche kopierten Ordner, dann brich ab
-            if (node.getNodeType() == Node.ELEMENT_NODE) //Anderer Fall kann normalerweise nicht eintreten ...
-                ((Element) node).setAttribute(ATTR_TITLE, to);
-            try {
-                FileUtils.delete(newPath);
-            } catch (IOException e1) {
-                //Fehlgeschlagen, lass (jetzt nicht mehr benötigten) Ordner in Ruhe und logge das Ganze
-                e1.addSuppressed(e);
-                Logging.log(Level.WARNING, "Ordner \"" + newPath.toString() + "\" ist nun unnötig, Löschen schlug "
-                        + "allerdings fehl!", e1);
-            }
-            throw e;
-        }
+        // Nur eine andere Schreibweise des eigenen Titels ist erlaubt, sonst würden die Ordner zusammengelegt
+        Topic collision = findCollision(to);
+        if (collision != null && collision != node)
+            throw new TitleCollisionException("Knoten \"" + to + "\" existiert bereits!");
 
-        // Lösche Originalen Ordner
-        try {
-            FileUtils.delete(oldPath);
-        } catch (IOException e) {
-            //Fehlgeschlagen, lass (jetzt nicht mehr benötigten) Ordner in Ruhe und logge das Ganze
-            Logging.log(Level.WARNING, "Ordner \"" + newPath.toString() + "\" ist nun unnötig, Löschen schlug " +
-                    "allerdings fehl!", e);
-        }
+        Path oldPath = locateDirectory(node);
+        retitle(node, to);
+        touch(node);
+        transaction.applied(() -> retitle(node, from), TopicTreeJournal.Operation.RENAME_NODE, from, to);
 
+        // Umbenennen des Ordners
+        transaction.move(oldPath, locateDirectory(node));
         Logging.log(Level.INFO, "Titel des Knotens \"" + from + "\" zu \"" + to + "\" geändert");
     }
 
+    /**
+     * Ändern des Titels eines Knotens unter Nachführung der Titelindizes
+     *
+     * @param topic Betreffender Knoten
+     * @param title Neuer Titel
+     * @since 1.0
+     */
+    private void retitle(Topic topic, String title) {
+        titleIndex.remove(topic.getTitle(), topic);
+        normalizedTitleIndex.remove(FileUtils.normalize(topic.getTitle()), topic);
+        topic.setTitle(title);
+        index(topic);
+    }
+
     /**
      * Finden eines Inhalts in der XML-Datei
      *
      * @param content Der zu suchende Inhalt
      * @param parent  Elternknoten des Inhalts
-     * @return Den Inhalt als {@code Node}-Objekt
+     * @return Position des Inhalts unter den Inhalten des Elternknotens
+     * @throws IllegalArgumentException wenn es den Knoten oder den Inhalt nicht gibt. Innerhalb einer Transaktion
+     *                                  wird diese dann rückgängig gemacht.
      * @since 1.0
      */
-    private Node getContent(Content content, String parent) {
-        String expr = "//" + TAG_NODE + "[@" + ATTR_TITLE + "='" + parent + "']/" + TAG_CONTENT + "[@" + ATTR_FILENAME +
-                "='" + content.getFilename() + "']";
-        Node contentNode = xmlHandler.getNode(expr);
+    private int getContent(Content content, String parent) {
+        int contentNode = getNode(parent).indexOfContent(content.getFilename());
 
-        if (contentNode == null) {
-            //Darf und wird nicht vorkommen. Sollte es doch -> Loggen und das Programm schließen
-            NullPointerException e = new NullPointerException("Es wurde nach einem nicht vorhanden Inhalt " +
+        if (contentNode == -1) {
+            //Darf und wird nicht vorkommen. Sollte es doch -> Loggen und die Änderung abbrechen
+            IllegalArgumentException e = new IllegalArgumentException("Es wurde nach einem nicht vorhanden Inhalt " +
                     "gefordert: \"" + content.getFilename() + "\" unter dem Knoten \"" + parent + "\"");
-            new ErrorAlert(e).showAndWait();
             Logging.log(Level.SEVERE, Constants.FATAL_ERROR_MESSAGE, e);
-            throw new InternalError(Constants.FATAL_ERROR_MESSAGE, e);
+            throw e;
         }
         return contentNode;
     }
@@ -701,19 +1500,14 @@ public class TopicTreeController {
      * @since 1.0
      */
     public Content[] getContents(String title) {
-        String expr = "//" + TAG_NODE + "[@" + ATTR_TITLE + "='" + title + "']/" + TAG_CONTENT;
-        NodeList nodeList = xmlHandler.getNodeList(expr);
+        List<Content> contentList = getPublishedNode(title).getContents();
 
-        Content[] contents = new Content[nodeList.getLength()];
+        Content[] contents = new Content[contentList.size()];
         for (int i = 0; i < contents.length; i++) {
-            Node contentNode = nodeList.item(i);
-            if (contentNode.getNodeType() == Node.ELEMENT_NODE) { //Anderer Fall kann normalerweise nicht eintreten ...
-                Element contentElement = (Element) contentNode;
-                contents[i] = new Content(Content.Type.forName(contentElement.getAttribute(ATTR_TYPE)),
-                        contentElement.getAttribute(ATTR_FILENAME),
-                        contentElement.getAttribute(ATTR_CAPTION)
-                );
-            }
+            Content content = contentList.get(i);
+            // Ein fehlender Titel wird wie bisher als leerer Titel herausgegeben
+            contents[i] = content.getCaption() != null ? content
+                    : new Content(content.getType(), content.getFilename(), "");
         }
         return contents;
     }
@@ -725,91 +1519,112 @@ public class TopicTreeController {
      * @param content Hinzuzufügender Inhalt mit ursprünglichem Dateipfad
      * @param parent  Titel des betreffenden Knotens
      * @throws IOException          wenn das Kopieren der Datei fehlschlägt
-     * @throws TransformerException wenn das Speichern der XML-Datei fehlschlägt
      * @since 1.0
      */
-    public void addContent(Content content, String parent) throws IOException, TransformerException {
-        Node parentNode = getNode(parent);
+    public void addContent(Content content, String parent) throws IOException {
+        try {
+            beginTransaction().addContent(content, parent).commit();
+        } catch (TitleCollisionException e) {
+            // Kann beim Hinzufügen eines Inhalts nicht auftreten
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Hinzufügen eines Inhalts im Rahmen einer Transaktion
+     *
+     * @param content     Hinzuzufügender Inhalt mit ursprünglichem Dateipfad
+     * @param parent      Titel des betreffenden Knotens
+     * @param transaction Transaktion, in deren Rahmen hinzugefügt wird
+     * @since 1.0
+     */
+    void addContent(Content content, String parent, TopicTreeTransaction transaction) {
+        addContent(content, parent, transaction, false);
+    }
+
+    /**
+     * Hinzufügen eines Inhalts im Rahmen einer Transaktion, wahlweise unter Verschieben statt Kopieren seiner Datei
+     *
+     * @param content     Hinzuzufügender Inhalt mit ursprünglichem Dateipfad
+     * @param parent      Titel des betreffenden Knotens
+     * @param transaction Transaktion, in deren Rahmen hinzugefügt wird
+     * @param move        Ob die Datei verschoben statt kopiert wird
+     * @since 1.0
+     */
+    void addContent(Content content, String parent, TopicTreeTransaction transaction, boolean move) {
+        Topic parentNode = getNode(parent);
 
         //Finde benötigte Pfade from und to
         Path from = Paths.get(content.getFilename());
         String fileExtension = FileUtils.getFileExtension(from); //Finde Dateiendung
         String newFileName = FileUtils.normalize(content.getCaption() != null ? content.getCaption() : content.getType()
                 .toString());
-        String parentPath = locateDirectory(parentNode);
-        Path to = Paths.get(parentPath, newFileName + fileExtension);
-        for (int i = 0; to.toFile().exists(); i++) { //Finde iterativ einen geeigneten Dateinamen
-            to = Paths.get(parentPath, newFileName + i + fileExtension);
-        }
-
-        //Erstelle Element-Objekt aus dem Content-Objekt und Hinzufügen zum Elternknoten
-        Element contentElement = xmlHandler.getDocument().createElement(TAG_CONTENT);
-        contentElement.setAttribute(ATTR_TYPE, content.getType().toString());
-        contentElement.setAttribute(ATTR_FILENAME, to.getFileName().toString());
-        if (content.getCaption() != null)
-            contentElement.setAttribute(ATTR_CAPTION, content.getCaption());
-        parentNode.appendChild(contentElement);
-        Logging.log(Level.INFO, content.toString() + " erfolgreich erstellt");
-
-        //Kopieren der Datei
-        try {
-            FileUtils.copy(from, to);
-            Logging.log(Level.INFO, "Datei von " + content.toString() + " erfolgreich kopiert");
-        } catch (IOException e) {
-            // Fehlgeschlagen, ändere XML im Speicher zurück, dann brich ab
-            parentNode.removeChild(contentElement);
-            throw e;
+        Path parentPath = locateDirectory(parentNode);
+        Path to = parentPath.resolve(newFileName + fileExtension);
+        //Finde iterativ einen geeigneten Dateinamen, auch gegenüber den in dieser Transaktion schon hinzugefügten
+        for (int i = 0; to.toFile().exists() || parentNode.indexOfContent(to.getFileName().toString()) != -1; i++) {
+            to = parentPath.resolve(newFileName + i + fileExtension);
         }
 
-        //Speichern der XML-Datei
-        try {
-            saveFile();
-        } catch (IOException | TransformerException e) {
-            // Fehlgeschlagen, ändere XML im Speicher zurück, lösche Datei, dann brich ab
-            parentNode.removeChild(contentElement);
-            try {
-                FileUtils.delete(to);
-            } catch (IOException e1) {
-                //Fehlgeschlagen, lass (jetzt nicht mehr benötigten) Datei in Ruhe und logge das Ganze
-                e1.addSuppressed(e);
-                Logging.log(Level.WARNING, "Datei \"" + to.toString() + "\" ist nun unnötig, Löschen schlug " +
-                        "allerdings fehl!", e1);
-            }
-            throw e;
-        }
+        //Erstelle neues Content-Objekt mit dem endgültigen Dateinamen und Hinzufügen zum Elternknoten
+        Content contentElement = new Content(content.getType(), to.getFileName().toString(), content.getCaption());
+        parentNode.getContents().add(contentElement);
+        touch(parentNode);
+        transaction.applied(() -> parentNode.getContents().remove(contentElement),
+                TopicTreeJournal.Operation.ADD_CONTENT, parentNode.getTitle(), contentElement.getType().toString(),
+                contentElement.getFilename(), contentElement.getCaption());
+
+        //Kopieren bzw. Verschieben der Datei
+        if (move)
+            transaction.move(from, to);
+        else
+            transaction.copy(from, to);
         Logging.log(Level.INFO, content.toString() + " unter dem Knoten \"" + parent + "\" eingefügt");
     }
 
-    public void renameContent(Content content, String parent, String caption) throws TransformerException, IOException {
-        Node parentNode = getNode(parent);
-        Path filePath = Paths.get(locateDirectory(parentNode), content.getFilename());
-        String extension = FileUtils.getFileExtension(filePath);
-        Node contentNode = getContent(content, parent);
-
-        if (contentNode.getNodeType() == Node.ELEMENT_NODE) { //Anderer Fall kann normalerweise nicht eintreten ...
-            ((Element) contentNode).setAttribute(ATTR_CAPTION, caption);
-            ((Element) contentNode).setAttribute(ATTR_FILENAME, FileUtils.normalize(caption) + extension);
-
-        }
-
+    /**
+     * Umbenennen eines Inhalts samt seiner Datei
+     *
+     * @param content Umzubenennender Inhalt
+     * @param parent  Titel des betreffenden Knotens
+     * @param caption Neuer Titel des Inhalts
+     * @throws IOException wenn das Umbenennen der Datei fehlschlägt
+     * @since 1.0
+     */
+    public void renameContent(Content content, String parent, String caption) throws IOException {
         try {
-            FileUtils.move(filePath, filePath.getParent().resolve(FileUtils.normalize(caption) + extension));
-        } catch (IOException e) {
-            //Fehlgeschlagen, änder XML im Speicher zurück, dann brich ab
-            if (contentNode.getNodeType() == Node.ELEMENT_NODE) { //Anderer Fall kann normalerweise nicht eintreten ...
-                ((Element) contentNode).setAttribute(ATTR_CAPTION, content.getCaption());
-                ((Element) contentNode).setAttribute(ATTR_FILENAME, content.getFilename());
-            }
-            throw e;
+            beginTransaction().renameContent(content, parent, caption).commit();
+        } catch (TitleCollisionException e) {
+            // Kann beim Umbenennen eines Inhalts nicht auftreten
+            throw new InternalError(e);
         }
+    }
 
-        // Speichern der XML-Datei
-        try {
-            saveFile();
-        } catch (IOException | TransformerException e) {
-            FileUtils.move(filePath.getParent().resolve(caption), filePath);
-            throw e;
-        }
+    /**
+     * Umbenennen eines Inhalts im Rahmen einer Transaktion
+     *
+     * @param content     Umzubenennender Inhalt
+     * @param parent      Titel des betreffenden Knotens
+     * @param caption     Neuer Titel des Inhalts
+     * @param transaction Transaktion, in deren Rahmen umbenannt wird
+     * @since 1.0
+     */
+    void renameContent(Content content, String parent, String caption, TopicTreeTransaction transaction) {
+        Topic parentNode = getNode(parent);
+        Path filePath = locateDirectory(parentNode).resolve(content.getFilename());
+        String extension = FileUtils.getFileExtension(filePath);
+        int contentNode = getContent(content, parent);
+        Content oldContent = parentNode.getContents().get(contentNode);
+        Path newPath = filePath.getParent().resolve(FileUtils.normalize(caption) + extension);
+
+        parentNode.getContents().set(contentNode, new Content(oldContent.getType(),
+                newPath.getFileName().toString(), caption));
+        touch(parentNode);
+        transaction.applied(() -> parentNode.getContents().set(contentNode, oldContent),
+                TopicTreeJournal.Operation.RENAME_CONTENT, parentNode.getTitle(), oldContent.getFilename(),
+                newPath.getFileName().toString(), caption);
+
+        transaction.move(filePath, newPath);
     }
 
     /**
@@ -817,36 +1632,39 @@ public class TopicTreeController {
      *
      * @param parent  Titel des Elternknotens
      * @param content Zu entfernender Inhalt
-     * @throws TransformerException wenn das Speichern der XML-Datei fehlschlägt
      * @throws IOException          wenn Löschen der Datei fehlschlägt
      * @since 1.0
      */
-    public void removeContent(Content content, String parent) throws TransformerException, IOException {
-        Node parentNode = getNode(parent);
-        Path filePath = Paths.get(locateDirectory(parentNode), content.getFilename());
-        Node contentNode = getContent(content, parent);
-
-        //Entferne Inhalt aus der XML
-        parentNode.removeChild(contentNode);
-
-        //Speichern der XML-Datei
+    public void removeContent(Content content, String parent) throws IOException {
         try {
-            saveFile();
-        } catch (IOException | TransformerException e) {
-            //Fehlgeschlagen, ändere XML im Speicher zurück und brich ab
-            parentNode.appendChild(contentNode); //Klatsch es einfach wieder hinten ran, es ist ja was schiefgelaufen
-            throw e;
+            beginTransaction().removeContent(content, parent).commit();
+        } catch (TitleCollisionException e) {
+            // Kann beim Löschen eines Inhalts nicht auftreten
+            throw new InternalError(e);
         }
+    }
 
-        //Löschen der Datei
-        try {
-            Files.delete(filePath);
-        } catch (IOException e) {
-            //Fehlgeschlagen, lass (jetzt nicht mehr benötigten) Datei in Ruhe und logge das Ganze
-            Logging.log(Level.WARNING, "Datei \"" + filePath.toString() + "\" ist nun unnötig, Löschen schlug " +
-                    "allerdings fehl!", e);
-        }
+    /**
+     * Löschen eines Inhalts im Rahmen einer Transaktion
+     *
+     * @param content     Zu entfernender Inhalt
+     * @param parent      Titel des Elternknotens
+     * @param transaction Transaktion, in deren Rahmen gelöscht wird
+     * @since 1.0
+     */
+    void removeContent(Content content, String parent, TopicTreeTransaction transaction) {
+        Topic parentNode = getNode(parent);
+        Path filePath = locateDirectory(parentNode).resolve(content.getFilename());
+        int contentNode = getContent(content, parent);
+
+        //Entferne Inhalt aus der XML
+        Content removed = parentNode.getContents().remove(contentNode);
+        touch(parentNode);
+        transaction.applied(() -> parentNode.getContents().add(contentNode, removed),
+                TopicTreeJournal.Operation.REMOVE_CONTENT, parentNode.getTitle(), removed.getFilename());
 
+        //Löschen der Datei
+        transaction.remove(filePath);
         Logging.log(Level.INFO, content.toString() + " wurde vom Knoten \"" + parent + "\" entfernt");
     }
 
@@ -856,28 +1674,50 @@ public class TopicTreeController {
      * @param c1     Erster Inhalt
      * @param c2     Zweiter Inhalt
      * @param parent Elternknoten
-     * @throws TransformerException wenn das Speichern der XML-Datei fehlschlägt
      * @throws IOException          wenn das Speichern der XML-Datei fehlschlägt
      */
-    public void swapContents(Content c1, Content c2, String parent) throws IOException, TransformerException {
-        Node parentNode = getNode(parent);
-        Node n1 = getContent(c1, parent);
-        Node n2 = getContent(c2, parent);
-
-        Node anotherNode = n1.getNextSibling(); // Hol den Knoten, welcher auf n1 folgt; brauchen wir, um uns den Platz
-        // zu merken. Ist er NULL, auch egal, wird später n2 einfach ans Ende
-        // der childNodes-Liste gepackt
-        parentNode.insertBefore(n1, n2);
-        if (anotherNode == null)
-            parentNode.appendChild(n2);
-        else
-            parentNode.insertBefore(n2, anotherNode);
-
+    public void swapContents(Content c1, Content c2, String parent) throws IOException {
         try {
-            saveFile();
-        } catch (IOException | TransformerException e) {
-            //Fehlgeschlagen, auch egal, wurde ja nur die Reihenfolge geändert
-            throw e;
+            beginTransaction().swapContents(c1, c2, parent).commit();
+        } catch (TitleCollisionException e) {
+            // Kann beim Vertauschen nicht auftreten
+            throw new InternalError(e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Vertauschen zweier Inhalte im Rahmen einer Transaktion
+     *
+     * @param c1          Erster Inhalt
+     * @param c2          Zweiter Inhalt
+     * @param parent      Elternknoten
+     * @param transaction Transaktion, in deren Rahmen vertauscht wird
+     * @since 1.0
+     */
+    void swapContents(Content c1, Content c2, String parent, TopicTreeTransaction transaction) {
+        Topic parentNode = getNode(parent);
+        int n1 = getContent(c1, parent);
+        int n2 = getContent(c2, parent);
+
+        Collections.swap(parentNode.getContents(), n1, n2);
+        touch(parentNode);
+        transaction.applied(() -> Collections.swap(parentNode.getContents(), n1, n2),
+                TopicTreeJournal.Operation.ORDER_CONTENTS, contentOrder(parentNode));
+    }
+
+    /**
+     * Ermitteln der Reihenfolge der Inhalte eines Knotens für das Journal
+     *
+     * @param parentNode Betreffender Knoten
+     * @return Titel des Knotens gefolgt von den Dateinamen aller Inhalte in ihrer Reihenfolge
+     * @since 1.0
+     */
+    private static String[] contentOrder(Topic parentNode) {
+        List<Content> contents = parentNode.getContents();
+        String[] order = new String[contents.size() + 1];
+        order[0] = parentNode.getTitle();
+        for (int i = 0; i < contents.size(); i++)
+            order[i + 1] = contents.get(i).getFilename();
+        return order;
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.Logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Journal aller Änderungen am Themenbaum seit dem letzten Speichern der XML-Datei.
+ * <p>
+ * Jede Änderung wird als eine Zeile an das Journal angehängt und sofort auf die Platte geschrieben, sodass eine
+ * Änderung nur noch Aufwand proportional zu ihrer eigenen Größe verursacht. Beim Laden wird das Journal über die
+ * zuletzt gespeicherte XML-Datei gelegt. Zum Kompaktieren wird das Journal zunächst beiseitegelegt, dann die
+ * XML-Datei neu geschrieben und erst danach das beiseitegelegte Journal gelöscht.
+ * <p>
+ * Eine Zeile besteht aus dem Namen der {@link Operation} und ihren Argumenten, jeweils durch Tabulatoren getrennt.
+ * Eine unvollständige letzte Zeile nach einem Absturz wird verworfen und beim Laden aus der Datei entfernt. Bevor die
+ * XML-Datei bei der Kompaktierung geschrieben wird, erhält das beiseitegelegte Journal eine Markierung mit der
+ * Prüfsumme des neuen Stands. Stürzt das Programm ab, nachdem die XML-Datei geschrieben, aber bevor das beiseitegelegte
+ * Journal gelöscht wurde, so erkennt das Laden daran, dass dessen Einträge bereits in der XML-Datei enthalten sind.
+ * <p>
+ * Mehrere zusammengehörige Änderungen werden mit einer vorangestellten Zeile samt ihrer Anzahl in einem Schritt
+ * angehängt. Fehlen nach einem Absturz Zeilen einer solchen Gruppe, wird die gesamte Gruppe verworfen.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class TopicTreeJournal {
+
+    /**
+     * Art einer Änderung samt Bedeutung ihrer Argumente.
+     *
+     * @since 1.0
+     */
+    enum Operation {
+        /**
+         * Titel, Titel des Elternknotens
+         */
+        ADD_NODE,
+        /**
+         * Titel, Titel des neuen Elternknotens
+         */
+        MOVE_NODE,
+        /**
+         * Titel
+         */
+        REMOVE_NODE,
+        /**
+         * Alter Titel, neuer Titel
+         */
+        RENAME_NODE,
+        /**
+         * Titel des Elternknotens, Typ, Dateiname, Beschriftung
+         */
+        ADD_CONTENT,
+        /**
+         * Titel des Elternknotens, alter Dateiname, neuer Dateiname, Beschriftung
+         */
+        RENAME_CONTENT,
+        /**
+         * Titel des Elternknotens, Dateiname
+         */
+        REMOVE_CONTENT,
+        /**
+         * Titel des Elternknotens, Dateinamen aller Inhalte in ihrer neuen Reihenfolge
+         */
+        ORDER_CONTENTS
+    }
+
+    /**
+     * Einzelner Eintrag des Journals.
+     *
+     * @since 1.0
+     */
+    static class Entry {
+
+        /**
+         * Art der Änderung
+         *
+         * @since 1.0
+         */
+        final Operation operation;
+
+        /**
+         * Argumente der Änderung; {@code null} steht für die Wurzel bzw. eine fehlende Beschriftung
+         *
+         * @since 1.0
+         */
+        final String[] arguments;
+
+        /**
+         * Konstruktion eines Eintrags.
+         *
+         * @param operation Art der Änderung
+         * @param arguments Argumente der Änderung
+         * @since 1.0
+         */
+        Entry(Operation operation, String[] arguments) {
+            this.operation = operation;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public String toString() {
+            return operation + Arrays.toString(arguments);
+        }
+    }
+
+    /**
+     * Maskierung von {@code null} in einer Zeile
+     *
+     * @since 1.0
+     */
+    private static final String NULL = "\\0";
+
+    /**
+     * Bezeichner der Markierung eines gespeicherten Stands
+     *
+     * @since 1.0
+     */
+    private static final String SNAPSHOT = "SNAPSHOT";
+
+    /**
+     * Bezeichner des Beginns einer Gruppe zusammengehöriger Einträge
+     *
+     * @since 1.0
+     */
+    private static final String BATCH = "BATCH";
+
+    /**
+     * Pfad des aktuellen Journals
+     *
+     * @since 1.0
+     */
+    private final Path path;
+
+    /**
+     * Pfad des beiseitegelegten Journals während der Kompaktierung
+     *
+     * @since 1.0
+     */
+    private final Path compactingPath;
+
+    /**
+     * Geöffneter Kanal zum Anhängen; wird erst beim ersten Eintrag geöffnet
+     *
+     * @since 1.0
+     */
+    private FileChannel channel;
+
+    /**
+     * Konstruktion des Journals.
+     *
+     * @param path Pfad des Journals
+     * @since 1.0
+     */
+    TopicTreeJournal(Path path) {
+        this.path = path;
+        this.compactingPath = path.resolveSibling(path.getFileName() + ".compacting");
+    }
+
+    /**
+     * Anhängen zusammengehöriger Änderungen. Sie werden beim Laden entweder alle oder gar nicht nachgespielt.
+     * Kehrt erst zurück, wenn die Zeilen auf der Platte angekommen sind.
+     *
+     * @param entries Anzuhängende Änderungen
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    synchronized void append(List<Entry> entries) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        if (entries.size() > 1)
+            lines.append(BATCH).append('\t').append(entries.size()).append('\n');
+        for (Entry entry : entries) {
+            lines.append(entry.operation.name());
+            for (String argument : entry.arguments)
+                lines.append('\t').append(escape(argument));
+            lines.append('\n');
+        }
+        lines.setLength(lines.length() - 1);
+
+        if (channel == null)
+            channel = open(path);
+        try {
+            writeLine(channel, lines.toString());
+        } catch (IOException e) {
+            try {
+                close();
+            } catch (IOException e1) {
+                e.addSuppressed(e1);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Öffnen eines Journals zum Anhängen.
+     *
+     * @param file Pfad des Journals
+     * @return Kanal zum Anhängen
+     * @throws IOException wenn das Öffnen fehlgeschlagen ist
+     * @since 1.0
+     */
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Anhängen einer oder mehrerer Zeilen samt abschließendem Zeilenumbruch. Kehrt erst zurück, wenn die Zeilen auf
+     * der Platte angekommen sind.
+     *
+     * @param channel Kanal zum Anhängen
+     * @param line    Zeilen ohne abschließenden Zeilenumbruch
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    private static void writeLine(FileChannel channel, String line) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.wrap((line + '\n').getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(false);
+        } catch (IOException e) {
+            // Eine halb geschriebene Zeile würde sonst mit der nächsten verschmelzen
+            try {
+                channel.truncate(size);
+            } catch (IOException e1) {
+                e.addSuppressed(e1);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Beiseitelegen des aktuellen Journals zu Beginn einer Kompaktierung. Ein noch übriges Journal einer
+     * fehlgeschlagenen Kompaktierung bleibt dabei erhalten und wird um das aktuelle Journal ergänzt.
+     * Anschließend wird der neue Stand im beiseitegelegten Journal markiert.
+     * <p>
+     * Muss unter derselben Sperre aufgerufen werden, unter der auch der zu speichernde Stand ermittelt wird.
+     *
+     * @param snapshot Inhalt der gleich zu schreibenden XML-Datei
+     * @throws IOException wenn das Journal nicht beiseitegelegt werden konnte
+     * @since 1.0
+     */
+    synchronized void rotate(byte[] snapshot) throws IOException {
+        close();
+        if (Files.exists(path)) {
+            if (Files.exists(compactingPath)) {
+                Files.write(compactingPath, Files.readAllBytes(path), StandardOpenOption.APPEND);
+                Files.delete(path);
+            } else {
+                Files.move(path, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        if (Files.exists(compactingPath)) {
+            try (FileChannel compacting = open(compactingPath)) {
+                writeLine(compacting, SNAPSHOT + '\t' + checksum(snapshot));
+            }
+        }
+    }
+
+    /**
+     * Abschluss einer Kompaktierung, nachdem die XML-Datei erfolgreich geschrieben wurde.
+     *
+     * @throws IOException wenn das beiseitegelegte Journal nicht gelöscht werden konnte
+     * @since 1.0
+     */
+    synchronized void finishCompaction() throws IOException {
+        Files.deleteIfExists(compactingPath);
+    }
+
+    /**
+     * Einlesen aller Einträge, die noch nicht in einem bestimmten Stand der XML-Datei enthalten sind,
+     * zuerst aus dem beiseitegelegten und dann aus dem aktuellen Journal.
+     *
+     * @param snapshot Pfad der gerade geladenen XML-Datei
+     * @return Einträge in ihrer ursprünglichen Reihenfolge
+     * @throws IOException wenn eines der Journale nicht gelesen werden konnte
+     * @since 1.0
+     */
+    synchronized List<Entry> read(Path snapshot) throws IOException {
+        String checksum = Files.exists(snapshot) ? checksum(Files.readAllBytes(snapshot)) : null;
+        List<Entry> entries = new ArrayList<>();
+        read(compactingPath, checksum, entries);
+        read(path, checksum, entries);
+        return entries;
+    }
+
+    /**
+     * Einlesen eines einzelnen Journals.
+     * <p>
+     * Eine unvollständige letzte Zeile oder Gruppe wird nicht nur verworfen, sondern auch aus der Datei entfernt, da
+     * sonst der nächste angehängte Eintrag mit ihr verschmelzen bzw. ihr zugerechnet würde. Eine Gruppe, die von einer
+     * neuen Gruppe oder einer Markierung unterbrochen wird, wird verworfen.
+     *
+     * @param file     Pfad des Journals
+     * @param checksum Prüfsumme der geladenen XML-Datei
+     * @param entries  Liste, an die die Einträge angehängt werden
+     * @throws IOException wenn das Journal nicht gelesen oder gekürzt werden konnte
+     * @since 1.0
+     */
+    private static void read(Path file, String checksum, List<Entry> entries) throws IOException {
+        if (!Files.exists(file))
+            return;
+
+        byte[] data = Files.readAllBytes(file);
+        List<Entry> batch = null;
+        int batchSize = 0;
+        int complete = 0; // Ende des letzten vollständigen Eintrags bzw. der letzten vollständigen Gruppe
+        int start = 0;
+        for (int end = indexOfNewline(data, start); end != -1; end = indexOfNewline(data, start)) {
+            String line = new String(data, start, end - start, StandardCharsets.UTF_8);
+            start = end + 1;
+            if (line.isEmpty()) {
+                if (batch == null)
+                    complete = start;
+                continue;
+            }
+
+            String[] fields = line.split("\t", -1);
+            if (batch != null && (fields[0].equals(BATCH) || fields[0].equals(SNAPSHOT))) {
+                Logging.log(Level.WARNING, "Unvollständige Gruppe in \"" + file + "\" verworfen");
+                batch = null;
+            }
+            if (fields[0].equals(BATCH)) {
+                try {
+                    batchSize = Integer.parseInt(fields[1]);
+                    batch = new ArrayList<>(batchSize);
+                } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                    Logging.log(Level.WARNING, "Ungültiger Eintrag \"" + line + "\" in \"" + file
+                            + "\" übersprungen", e);
+                    complete = start;
+                }
+                continue;
+            }
+            if (fields[0].equals(SNAPSHOT)) {
+                // Alles davor ist bereits in der geladenen XML-Datei enthalten
+                if (fields.length == 2 && fields[1].equals(checksum))
+                    entries.clear();
+                complete = start;
+                continue;
+            }
+            try {
+                String[] arguments = new String[fields.length - 1];
+                for (int i = 0; i < arguments.length; i++)
+                    arguments[i] = unescape(fields[i + 1]);
+                Entry entry = new Entry(Operation.valueOf(fields[0]), arguments);
+                if (batch == null) {
+                    entries.add(entry);
+                    complete = start;
+                } else {
+                    batch.add(entry);
+                    if (batch.size() == batchSize) {
+                        entries.addAll(batch);
+                        batch = null;
+                        complete = start;
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                Logging.log(Level.WARNING, "Ungültiger Eintrag \"" + line + "\" in \"" + file + "\" übersprungen", e);
+                if (batch == null)
+                    complete = start;
+            }
+        }
+
+        if (complete < data.length) {
+            Logging.log(Level.WARNING, "Unvollständiger letzter Eintrag in \"" + file + "\" verworfen");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Suchen des nächsten Zeilenumbruchs. In UTF-8 kann das Byte eines Zeilenumbruchs nicht Teil eines anderen
+     * Zeichens sein.
+     *
+     * @param data  Inhalt des Journals
+     * @param start Position, ab der gesucht wird
+     * @return Position des Zeilenumbruchs oder {@code -1}
+     * @since 1.0
+     */
+    private static int indexOfNewline(byte[] data, int start) {
+        for (int i = start; i < data.length; i++) {
+            if (data[i] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Schließen des Kanals zum Anhängen. Beim nächsten Eintrag wird er neu geöffnet.
+     *
+     * @throws IOException wenn das Schließen fehlgeschlagen ist
+     * @since 1.0
+     */
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * @return Pfade des aktuellen und des beiseitegelegten Journals
+     * @since 1.0
+     */
+    List<Path> getPaths() {
+        return Collections.unmodifiableList(Arrays.asList(path, compactingPath));
+    }
+
+    /**
+     * Berechnung der Prüfsumme eines Stands der XML-Datei.
+     *
+     * @param data Inhalt der XML-Datei
+     * @return Länge und CRC-32 des Inhalts
+     * @since 1.0
+     */
+    private static String checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return data.length + ":" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Maskierung eines Arguments, damit es weder Tabulatoren noch Zeilenumbrüche enthält.
+     *
+     * @param value Argument oder {@code null}
+     * @return Maskiertes Argument
+     * @since 1.0
+     */
+    private static String escape(String value) {
+        if (value == null)
+            return NULL;
+
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Aufheben der Maskierung eines Arguments.
+     *
+     * @param value Maskiertes Argument
+     * @return Ursprüngliches Argument oder {@code null}
+     * @throws IllegalArgumentException wenn die Maskierung ungültig ist
+     * @since 1.0
+     */
+    private static String unescape(String value) {
+        if (value.equals(NULL))
+            return null;
+
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (++i == value.length())
+                throw new IllegalArgumentException("Unvollständige Maskierung");
+            switch (value.charAt(i)) {
+                case '\\':
+                    builder.append('\\');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unbekannte Maskierung \\" + value.charAt(i));
+            }
+        }
+        return builder.toString();
+    }
+}
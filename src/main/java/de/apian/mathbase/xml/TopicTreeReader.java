@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Streamender Leser der XML-Datei des Themenbaums.
+ * <p>
+ * Im Gegensatz zum {@link XmlFileHandler} wird hier kein DOM aufgebaut, sondern die Datei mithilfe der StAX-API
+ * in einem einzigen Durchlauf direkt in {@link Topic}-Objekte übersetzt. Das Dateiformat ist dabei exakt dasselbe.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @see <a href="https://docs.oracle.com/javase/tutorial/jaxp/stax/index.html">Streaming API for XML</a>
+ * @since 1.0
+ */
+class TopicTreeReader {
+
+    /**
+     * Fabrik für die StAX-Leser; einmal erzeugt und danach wiederverwendet.
+     *
+     * @since 1.0
+     */
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        // Die Datei enthält weder DTD noch Entitäten, also wird beides zur Sicherheit abgeschaltet
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private TopicTreeReader() {
+    }
+
+    /**
+     * Einlesen einer XML-Datei des Themenbaums.
+     *
+     * @param path Pfad der zu ladenden Datei
+     * @return Wurzel des eingelesenen Themenbaums
+     * @throws IOException wenn die Datei nicht geladen oder geparst werden konnte
+     * @since 1.0
+     */
+    static Topic read(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Einlesen eines Themenbaums aus einem beliebigen Datenstrom.
+     *
+     * @param in Datenstrom im Format der XML-Datei
+     * @return Wurzel des eingelesenen Themenbaums
+     * @throws IOException wenn der Datenstrom nicht gelesen oder geparst werden konnte
+     * @since 1.0
+     */
+    static Topic read(InputStream in) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(in);
+            Deque<Topic> stack = new ArrayDeque<>();
+            Topic root = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (root == null) {
+                        if (!name.equals(TopicTreeController.TAG_ROOT))
+                            throw new IOException("Unerwartetes Wurzelelement \"" + name + "\"");
+                        root = new Topic(null);
+                        stack.push(root);
+                    } else if (name.equals(TopicTreeController.TAG_NODE)) {
+                        Topic topic = new Topic(attribute(reader, TopicTreeController.ATTR_TITLE, ""));
+                        stack.peek().addChild(topic);
+                        stack.push(topic);
+                    } else if (name.equals(TopicTreeController.TAG_CONTENT)) {
+                        stack.peek().getContents().add(new Content(
+                                Content.Type.forName(attribute(reader, TopicTreeController.ATTR_TYPE, "")),
+                                attribute(reader, TopicTreeController.ATTR_FILENAME, ""),
+                                attribute(reader, TopicTreeController.ATTR_CAPTION, null)));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (reader.getLocalName().equals(TopicTreeController.TAG_NODE))
+                        stack.pop();
+                }
+            }
+
+            if (root == null)
+                throw new IOException("Die Datei enthält keinen Themenbaum");
+            return root;
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            throw new IOException("Fehler beim Parsen der Datei", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Der Datenstrom selbst wird vom Aufrufer geschlossen
+                }
+            }
+        }
+    }
+
+    /**
+     * Auslesen eines Attributs des aktuellen Elements.
+     *
+     * @param reader       StAX-Leser, der auf einem Startelement steht
+     * @param name         Bezeichner des Attributs
+     * @param defaultValue Rückgabewert, falls das Attribut fehlt
+     * @return Wert des Attributs oder {@code defaultValue}
+     * @since 1.0
+     */
+    private static String attribute(XMLStreamReader reader, String name, String defaultValue) {
+        String value = reader.getAttributeValue(null, name);
+        return value != null ? value : defaultValue;
+    }
+}
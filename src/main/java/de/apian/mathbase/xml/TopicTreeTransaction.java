@@ -0,0 +1,552 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.Constants;
+import de.apian.mathbase.util.FileUtils;
+import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.util.ParallelTasks;
+import de.apian.mathbase.util.ProgressListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Zusammenfassung beliebig vieler Änderungen am Themenbaum zu einer einzigen, die ganz oder gar nicht ausgeführt wird.
+ * <p>
+ * Die Änderungen werden zunächst nur gesammelt. Beim {@link #commit()} werden sie alle im Speicher ausgeführt, danach
+ * werden die zugehörigen Ordner und Dateien in einem Durchgang angelegt, verschoben oder entfernt und zuletzt wird
+ * genau einmal gespeichert. Schlägt irgendein Schritt fehl, werden alle bereits ausgeführten Änderungen in
+ * umgekehrter Reihenfolge rückgängig gemacht. Entfernte Ordner und Dateien werden dafür bis zum erfolgreichen
+ * Speichern nur beiseitegelegt.
+ * <pre>{@code
+ * TopicTreeController.getInstance().beginTransaction()
+ *         .addNode("Stochastik", null)
+ *         .moveNode("Kombinatorik", "Stochastik")
+ *         .moveNode("Urnenmodelle", "Stochastik")
+ *         .commit();
+ * }</pre>
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @see TopicTreeController#beginTransaction()
+ * @since 1.0
+ */
+public class TopicTreeTransaction {
+
+    /**
+     * Einzelne gesammelte Änderung, die im Speicher ausgeführt wird.
+     *
+     * @since 1.0
+     */
+    @FunctionalInterface
+    interface Step {
+        void apply() throws TitleCollisionException, IOException;
+    }
+
+    /**
+     * Rückgängigmachen einer im Speicher ausgeführten Änderung.
+     *
+     * @since 1.0
+     */
+    @FunctionalInterface
+    interface Undo {
+        void undo();
+    }
+
+    /**
+     * Einzelne Operation auf Ordnern und Dateien samt ihrer Umkehrung.
+     *
+     * @since 1.0
+     */
+    private interface FileAction {
+        void run() throws IOException;
+
+        void revert() throws IOException;
+
+        /**
+         * @return ob die Operation gleichzeitig mit direkt benachbarten ebensolchen Operationen ausgeführt werden darf
+         */
+        default boolean isParallel() {
+            return false;
+        }
+    }
+
+    /**
+     * Kontrolleur, auf dessen Themenbaum die Änderungen ausgeführt werden
+     *
+     * @since 1.0
+     */
+    private final TopicTreeController controller;
+
+    /**
+     * Gesammelte Änderungen in ihrer Reihenfolge
+     *
+     * @since 1.0
+     */
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Geplante Operationen auf Ordnern und Dateien in ihrer Reihenfolge
+     *
+     * @since 1.0
+     */
+    private final List<FileAction> fileActions = new ArrayList<>();
+
+    /**
+     * Bereits ausgeführte Operationen auf Ordnern und Dateien
+     *
+     * @since 1.0
+     */
+    private final List<FileAction> performed = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Rückgängigmachungen der im Speicher ausgeführten Änderungen, die zuletzt ausgeführte zuoberst
+     *
+     * @since 1.0
+     */
+    private final Deque<Undo> undos = new ArrayDeque<>();
+
+    /**
+     * Einträge für das Journal
+     *
+     * @since 1.0
+     */
+    private final List<TopicTreeJournal.Entry> entries = new ArrayList<>();
+
+    /**
+     * Unterordner des {@link Trash Papierkorbs} mit entfernten Ordnern und Dateien, die nach dem erfolgreichen
+     * Speichern zum Löschen freigegeben werden
+     *
+     * @since 1.0
+     */
+    private final List<Path> staged = new ArrayList<>();
+
+    /**
+     * Empfänger des Fortschritts beim Verschieben über Dateisystemgrenzen hinweg oder {@code null}
+     *
+     * @since 1.0
+     */
+    private ProgressListener progressListener;
+
+    /**
+     * Ob die Transaktion bereits ausgeführt wurde
+     *
+     * @since 1.0
+     */
+    private boolean committed;
+
+    /**
+     * Konstruktion einer leeren Transaktion
+     *
+     * @param controller Kontrolleur, auf dessen Themenbaum die Änderungen ausgeführt werden
+     * @since 1.0
+     */
+    TopicTreeTransaction(TopicTreeController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Vormerken des Einfügens eines neuen Knotens
+     *
+     * @param title  Titel des einzufügenden Knotens
+     * @param parent Titel des gewünschten Elternknotens. Wenn {@code NULL}, dann wird die Wurzel verwendet.
+     * @return Diese Transaktion
+     * @see TopicTreeController#addNode(String, String)
+     * @since 1.0
+     */
+    public TopicTreeTransaction addNode(String title, String parent) {
+        return add(() -> controller.addNode(title, parent, this));
+    }
+
+    /**
+     * Vormerken des Verschiebens eines Knotens unter einen anderen
+     *
+     * @param from Titel des zu verschiebenden Knotens
+     * @param to   Titel des neuen Elternknotens. Wenn {@code NULL}, dann wird die Wurzel verwendet.
+     * @return Diese Transaktion
+     * @see TopicTreeController#moveNode(String, String)
+     * @since 1.0
+     */
+    public TopicTreeTransaction moveNode(String from, String to) {
+        return add(() -> controller.moveNode(from, to, this));
+    }
+
+    /**
+     * Vormerken des Entfernens eines Knotens mitsamt seinem Ordner
+     *
+     * @param title Titel des zu entfernenden Knotens
+     * @return Diese Transaktion
+     * @see TopicTreeController#removeNode(String)
+     * @since 1.0
+     */
+    public TopicTreeTransaction removeNode(String title) {
+        return add(() -> controller.removeNode(title, this));
+    }
+
+    /**
+     * Vormerken des Umbenennens eines Knotens
+     *
+     * @param from Ursprünglicher Titel
+     * @param to   Neuer Titel
+     * @return Diese Transaktion
+     * @see TopicTreeController#renameNode(String, String)
+     * @since 1.0
+     */
+    public TopicTreeTransaction renameNode(String from, String to) {
+        return add(() -> controller.renameNode(from, to, this));
+    }
+
+    /**
+     * Vormerken des Hinzufügens eines Inhalts
+     *
+     * @param content Hinzuzufügender Inhalt mit ursprünglichem Dateipfad
+     * @param parent  Titel des betreffenden Knotens
+     * @return Diese Transaktion
+     * @see TopicTreeController#addContent(Content, String)
+     * @since 1.0
+     */
+    public TopicTreeTransaction addContent(Content content, String parent) {
+        return add(() -> controller.addContent(content, parent, this));
+    }
+
+    /**
+     * Vormerken des Hinzufügens eines Inhalts, dessen Datei dabei verschoben statt kopiert wird, z.B. weil sie eigens
+     * dafür entpackt wurde. Beim Rückgängigmachen wird sie an ihren ursprünglichen Ort zurückgelegt.
+     *
+     * @param content Hinzuzufügender Inhalt mit ursprünglichem Dateipfad
+     * @param parent  Titel des betreffenden Knotens
+     * @return Diese Transaktion
+     * @since 1.0
+     */
+    TopicTreeTransaction adoptContent(Content content, String parent) {
+        return add(() -> controller.addContent(content, parent, this, true));
+    }
+
+    /**
+     * Vormerken des Umbenennens eines Inhalts
+     *
+     * @param content Umzubenennender Inhalt
+     * @param parent  Titel des betreffenden Knotens
+     * @param caption Neuer Titel des Inhalts
+     * @return Diese Transaktion
+     * @see TopicTreeController#renameContent(Content, String, String)
+     * @since 1.0
+     */
+    public TopicTreeTransaction renameContent(Content content, String parent, String caption) {
+        return add(() -> controller.renameContent(content, parent, caption, this));
+    }
+
+    /**
+     * Vormerken des Löschens eines Inhalts
+     *
+     * @param content Zu entfernender Inhalt
+     * @param parent  Titel des Elternknotens
+     * @return Diese Transaktion
+     * @see TopicTreeController#removeContent(Content, String)
+     * @since 1.0
+     */
+    public TopicTreeTransaction removeContent(Content content, String parent) {
+        return add(() -> controller.removeContent(content, parent, this));
+    }
+
+    /**
+     * Vormerken des Vertauschens zweier Inhalte
+     *
+     * @param c1     Erster Inhalt
+     * @param c2     Zweiter Inhalt
+     * @param parent Elternknoten
+     * @return Diese Transaktion
+     * @see TopicTreeController#swapContents(Content, Content, String)
+     * @since 1.0
+     */
+    public TopicTreeTransaction swapContents(Content c1, Content c2, String parent) {
+        return add(() -> controller.swapContents(c1, c2, parent, this));
+    }
+
+    /**
+     * Festlegen eines Empfängers des Fortschritts. Ordner werden nach Möglichkeit in einem Schritt umbenannt; nur wenn
+     * sie dafür zwischen Dateisystemen kopiert werden müssen, wird laufend Fortschritt in Bytes gemeldet.
+     *
+     * @param listener Empfänger des Fortschritts oder {@code null}
+     * @return Diese Transaktion
+     * @see FileUtils#move(Path, Path, ProgressListener)
+     * @since 1.0
+     */
+    public TopicTreeTransaction setProgressListener(ProgressListener listener) {
+        progressListener = listener;
+        return this;
+    }
+
+    /**
+     * Ausführen aller gesammelten Änderungen mit einmaligem Speichern. Schlägt eine davon fehl, ist danach keine der
+     * Änderungen ausgeführt.
+     *
+     * @throws TitleCollisionException wenn eine Änderung wegen eines bereits vergebenen Titels nicht möglich ist
+     * @throws IOException             wenn eine Operation auf Ordnern und Dateien oder das Speichern fehlschlägt
+     * @throws IllegalStateException   wenn die Transaktion bereits ausgeführt wurde
+     * @since 1.0
+     */
+    public void commit() throws TitleCollisionException, IOException {
+        if (committed)
+            throw new IllegalStateException("Transaktion wurde bereits ausgeführt!");
+        committed = true;
+        controller.execute(this);
+    }
+
+    /**
+     * Anhängen einer Änderung
+     *
+     * @param step Änderung
+     * @return Diese Transaktion
+     * @since 1.0
+     */
+    private TopicTreeTransaction add(Step step) {
+        if (committed)
+            throw new IllegalStateException("Transaktion wurde bereits ausgeführt!");
+        steps.add(step);
+        return this;
+    }
+
+    /**
+     * @return Gesammelte Änderungen in ihrer Reihenfolge
+     * @since 1.0
+     */
+    List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * @return Einträge für das Journal aller bisher im Speicher ausgeführten Änderungen
+     * @since 1.0
+     */
+    List<TopicTreeJournal.Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Festhalten einer im Speicher ausgeführten Änderung.
+     *
+     * @param undo      Rückgängigmachung der Änderung
+     * @param operation Art der Änderung für das Journal
+     * @param arguments Argumente der Änderung für das Journal
+     * @since 1.0
+     */
+    void applied(Undo undo, TopicTreeJournal.Operation operation, String... arguments) {
+        undos.push(undo);
+        entries.add(new TopicTreeJournal.Entry(operation, arguments));
+    }
+
+    /**
+     * Vormerken des Anlegens eines Ordners
+     *
+     * @param path Pfad des Ordners
+     * @since 1.0
+     */
+    void createDirectory(Path path) {
+        fileActions.add(new FileAction() {
+            @Override
+            public void run() throws IOException {
+                Files.createDirectory(path);
+            }
+
+            @Override
+            public void revert() throws IOException {
+                FileUtils.delete(path);
+            }
+        });
+    }
+
+    /**
+     * Vormerken des Kopierens einer Datei. Direkt aufeinanderfolgende Kopiervorgänge werden gleichzeitig ausgeführt,
+     * siehe {@link Constants#COPY_THREADS}. Ist die {@link ContentStore Ablage} eingeschaltet, wird die Datei dort
+     * abgelegt und nur verknüpft.
+     *
+     * @param from Urpfad
+     * @param to   Zielpfad
+     * @since 1.0
+     */
+    void copy(Path from, Path to) {
+        ContentStore store = controller.getContentStore();
+        fileActions.add(new FileAction() {
+            @Override
+            public void run() throws IOException {
+                if (store != null && Files.isRegularFile(from))
+                    store.link(from, to);
+                else
+                    FileUtils.copy(from, to);
+            }
+
+            @Override
+            public void revert() throws IOException {
+                FileUtils.delete(to);
+            }
+
+            @Override
+            public boolean isParallel() {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Vormerken des Verschiebens eines Ordners oder einer Datei
+     *
+     * @param from Urpfad
+     * @param to   Zielpfad
+     * @since 1.0
+     */
+    void move(Path from, Path to) {
+        if (from.equals(to))
+            return;
+
+        fileActions.add(new FileAction() {
+            @Override
+            public void run() throws IOException {
+                FileUtils.move(from, to, progressListener);
+            }
+
+            @Override
+            public void revert() throws IOException {
+                FileUtils.move(to, from, progressListener);
+            }
+        });
+    }
+
+    /**
+     * Vormerken des Entfernens eines Ordners oder einer Datei. Er bzw. sie wird nur in den {@link Trash Papierkorb}
+     * verschoben, damit das Entfernen rückgängig gemacht werden kann, und erst später im Hintergrund gelöscht.
+     *
+     * @param path Pfad des Ordners bzw. der Datei
+     * @since 1.0
+     */
+    void remove(Path path) {
+        fileActions.add(new FileAction() {
+            private Path stage;
+
+            @Override
+            public void run() throws IOException {
+                stage = controller.getTrash().stage();
+                staged.add(stage);
+                FileUtils.move(path, stage.resolve(path.getFileName()));
+            }
+
+            @Override
+            public void revert() throws IOException {
+                FileUtils.move(stage.resolve(path.getFileName()), path);
+            }
+        });
+    }
+
+    /**
+     * Ausführen aller vorgemerkten Operationen auf Ordnern und Dateien in ihrer Reihenfolge
+     *
+     * @throws IOException wenn eine der Operationen fehlschlägt
+     * @since 1.0
+     */
+    void performFileActions() throws IOException {
+        for (int start = 0; start < fileActions.size(); ) {
+            int end = start;
+            while (end < fileActions.size() && fileActions.get(end).isParallel())
+                end++;
+
+            if (end - start > 1) {
+                performInParallel(fileActions.subList(start, end));
+                start = end;
+            } else {
+                FileAction action = fileActions.get(start++);
+                action.run();
+                performed.add(action);
+            }
+        }
+    }
+
+    /**
+     * Gleichzeitiges Ausführen mehrerer voneinander unabhängiger Operationen auf einer begrenzten Anzahl an Threads.
+     * Schlägt eine fehl, werden die noch nicht begonnenen nicht mehr ausgeführt und die laufenden abgewartet.
+     *
+     * @param actions Auszuführende Operationen
+     * @throws IOException wenn eine der Operationen fehlschlägt
+     * @since 1.0
+     */
+    private void performInParallel(List<FileAction> actions) throws IOException {
+        try (ParallelTasks tasks = new ParallelTasks("Kopieren", Math.min(actions.size(), Constants.COPY_THREADS))) {
+            for (FileAction action : actions) {
+                tasks.submit(() -> {
+                    action.run();
+                    performed.add(action);
+                });
+            }
+            tasks.await();
+        }
+    }
+
+    /**
+     * Rückgängigmachen aller bereits ausgeführten Änderungen in umgekehrter Reihenfolge, zuerst auf Ordnern und
+     * Dateien, dann im Speicher. Fehler dabei werden an die ursprüngliche Ausnahme angehängt.
+     *
+     * @param cause Ursprüngliche Ausnahme bzw. ursprünglicher Fehler
+     * @since 1.0
+     */
+    void rollback(Throwable cause) {
+        for (int i = performed.size() - 1; i >= 0; i--) {
+            try {
+                performed.get(i).revert();
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+                Logging.log(Level.WARNING, "Operation auf Ordnern und Dateien konnte nicht rückgängig gemacht " +
+                        "werden", e);
+            }
+        }
+        performed.clear();
+        while (!undos.isEmpty())
+            undos.pop().undo();
+        entries.clear();
+
+        // Nur leere Ordner löschen; was sich nicht zurückholen ließ, bleibt unmarkiert im Papierkorb
+        for (Path stage : staged) {
+            try {
+                Files.deleteIfExists(stage);
+            } catch (IOException e) {
+                Logging.log(Level.WARNING, "\"" + stage + "\" konnte nicht zurückgeholt werden und bleibt zum "
+                        + "Zurückholen von Hand im Papierkorb", e);
+            }
+        }
+        staged.clear();
+        purgeContentStore();
+        Logging.log(Level.WARNING, "Transaktion mit " + steps.size() + " Änderungen rückgängig gemacht", cause);
+    }
+
+    /**
+     * Freigeben aller entfernten Ordner und Dateien zum Löschen im Hintergrund nach dem erfolgreichen Speichern
+     *
+     * @since 1.0
+     */
+    void cleanUp() {
+        for (Path stage : staged)
+            controller.getTrash().discard(stage);
+        staged.clear();
+    }
+
+    /**
+     * Löschen der nicht mehr benötigten Dateien der {@link ContentStore Ablage}, sofern diese eingeschaltet ist
+     *
+     * @since 1.0
+     */
+    private void purgeContentStore() {
+        ContentStore store = controller.getContentStore();
+        if (store != null)
+            store.purge();
+    }
+}
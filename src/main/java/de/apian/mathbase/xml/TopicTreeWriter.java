@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streamender Schreiber der XML-Datei des Themenbaums.
+ * <p>
+ * Der Themenbaum wird direkt und ohne Umweg über DOM und {@code Transformer} als eingerückte UTF-8-Datei
+ * geschrieben. Das Format entspricht dabei genau dem, was bisher der {@code Transformer} erzeugt hat,
+ * sodass der Aufwand nur noch von der Größe der Ausgabe abhängt.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @see TopicTreeReader
+ * @since 1.0
+ */
+class TopicTreeWriter {
+
+    /**
+     * XML-Deklaration am Anfang jeder Datei.
+     *
+     * @since 1.0
+     */
+    static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+    /**
+     * Einrückung pro Ebene.
+     *
+     * @since 1.0
+     */
+    private static final String INDENT = "    ";
+
+    private TopicTreeWriter() {
+    }
+
+    /**
+     * Schreiben eines Themenbaums in ein Byte-Array, z.B. um ihn danach ohne Sperre auf die Platte zu schreiben.
+     *
+     * @param root Wurzel des Themenbaums
+     * @return Inhalt der XML-Datei in UTF-8
+     * @since 1.0
+     */
+    static byte[] toByteArray(Topic root) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(root, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // Kann beim Schreiben in den Speicher nicht vorkommen
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Schreiben eines einzelnen Themas samt Unterthemen als eigenständige Datei im Format der XML-Datei des
+     * Themenbaums, d.h. unter einer Wurzel, die nur dieses eine Thema enthält.
+     *
+     * @param topic Zu schreibendes Thema
+     * @return Inhalt der Datei in UTF-8
+     * @since 1.0
+     */
+    static byte[] shardToByteArray(Topic topic) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write(DECLARATION);
+            writer.write('\n');
+            writer.write('<' + TopicTreeController.TAG_ROOT + ">\n");
+            writeChildren(writer, TopicTreeController.TAG_NODE, topic.getTitle(), topic, 1);
+            writer.write("</" + TopicTreeController.TAG_ROOT + ">\n");
+        } catch (IOException e) {
+            // Kann beim Schreiben in den Speicher nicht vorkommen
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Schreiben eines Themenbaums in einen beliebigen {@code Writer}.
+     *
+     * @param root   Wurzel des Themenbaums
+     * @param writer Ziel der Ausgabe; wird nicht geschlossen
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    static void write(Topic root, Writer writer) throws IOException {
+        if (!(writer instanceof BufferedWriter))
+            writer = new BufferedWriter(writer);
+
+        writer.write(DECLARATION);
+        writer.write('\n');
+        writeChildren(writer, TopicTreeController.TAG_ROOT, null, root, 0);
+        writer.flush();
+    }
+
+    /**
+     * Rekursives Schreiben eines Elements samt seiner Inhalte und Unterthemen.
+     *
+     * @param writer Ziel der Ausgabe
+     * @param tag    Bezeichner des Elements
+     * @param title  Wert des Titelattributs oder {@code null}, falls das Element keinen Titel hat
+     * @param topic  Zu schreibendes Thema
+     * @param depth  Tiefe des Elements zur Einrückung
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    private static void writeChildren(Writer writer, String tag, String title, Topic topic, int depth)
+            throws IOException {
+        indent(writer, depth);
+        writer.write('<');
+        writer.write(tag);
+        if (title != null)
+            writeAttribute(writer, TopicTreeController.ATTR_TITLE, title);
+
+        if (topic.getContents().isEmpty() && topic.getChildren().isEmpty()) {
+            writer.write("/>\n");
+            return;
+        }
+        writer.write(">\n");
+
+        for (Content content : topic.getContents())
+            writeContent(writer, content, depth + 1);
+
+        for (Topic child : topic.getChildren())
+            writeChildren(writer, TopicTreeController.TAG_NODE, child.getTitle(), child, depth + 1);
+
+        indent(writer, depth);
+        writer.write("</");
+        writer.write(tag);
+        writer.write(">\n");
+    }
+
+    /**
+     * Schreiben eines Inhalts als leeres Element.
+     *
+     * @param writer  Ziel der Ausgabe
+     * @param content Zu schreibender Inhalt
+     * @param depth   Tiefe des Elements zur Einrückung
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    static void writeContent(Writer writer, Content content, int depth) throws IOException {
+        // Attribute in alphabetischer Reihenfolge, wie sie auch das DOM ausgibt
+        indent(writer, depth);
+        writer.write('<');
+        writer.write(TopicTreeController.TAG_CONTENT);
+        if (content.getCaption() != null)
+            writeAttribute(writer, TopicTreeController.ATTR_CAPTION, content.getCaption());
+        writeAttribute(writer, TopicTreeController.ATTR_FILENAME, content.getFilename());
+        writeAttribute(writer, TopicTreeController.ATTR_TYPE, content.getType().toString());
+        writer.write("/>\n");
+    }
+
+    /**
+     * Schreiben eines Attributs samt führendem Leerzeichen.
+     *
+     * @param writer Ziel der Ausgabe
+     * @param name   Bezeichner des Attributs
+     * @param value  Unmaskierter Wert des Attributs
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    static void writeAttribute(Writer writer, String name, String value) throws IOException {
+        writer.write(' ');
+        writer.write(name);
+        writer.write("=\"");
+
+        // Maskierung der Sonderzeichen, ohne für unkritische Werte einen neuen String zu erzeugen
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String entity;
+            switch (value.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '\n':
+                    entity = "&#10;";
+                    break;
+                case '\r':
+                    entity = "&#13;";
+                    break;
+                case '\t':
+                    entity = "&#9;";
+                    break;
+                default:
+                    continue;
+            }
+            writer.write(value, start, i - start);
+            writer.write(entity);
+            start = i + 1;
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+
+    /**
+     * Schreiben der Einrückung für eine bestimmte Tiefe.
+     *
+     * @param writer Ziel der Ausgabe
+     * @param depth  Tiefe
+     * @throws IOException wenn das Schreiben fehlgeschlagen ist
+     * @since 1.0
+     */
+    static void indent(Writer writer, int depth) throws IOException {
+        for (int i = 0; i < depth; i++)
+            writer.write(INDENT);
+    }
+}
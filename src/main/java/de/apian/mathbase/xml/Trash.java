@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.Constants;
+import de.apian.mathbase.util.FileUtils;
+import de.apian.mathbase.util.Logging;
+import de.apian.mathbase.util.ParallelTasks;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Papierkorb für entfernte Ordner und Dateien.
+ * <p>
+ * Beim Entfernen wird ein Ordner bzw. eine Datei nur in einen eigenen Unterordner des Papierkorbs umbenannt, was
+ * unabhängig von der Größe sofort geht. Erst nach einer Wartezeit wird er im Hintergrund endgültig gelöscht, wobei die
+ * Dateien gleichzeitig auf mehreren Threads gelöscht werden. Bis dahin kann er von Hand zurückgeholt werden.
+ * <p>
+ * Erst wenn die Transaktion, die einen Unterordner angelegt hat, erfolgreich gespeichert wurde, wird er mit einer
+ * Markierungsdatei zum Löschen freigegeben. Bleibt nach einem Absturz oder Beenden etwas im Papierkorb liegen, werden
+ * beim nächsten Start nur freigegebene Unterordner gelöscht. Alle anderen stammen aus einer unterbrochenen Transaktion
+ * und bleiben liegen, damit ihr Inhalt von Hand zurückgeholt werden kann.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+class Trash {
+
+    /**
+     * Name der Markierungsdatei, mit der ein Unterordner zum Löschen freigegeben wird
+     *
+     * @since 1.0
+     */
+    private static final String DISCARDED = ".verworfen";
+
+    /**
+     * Einzelner Hintergrund-Thread, auf dem die Löschvorgänge geplant und gestartet werden
+     *
+     * @since 1.0
+     */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            ParallelTasks.daemonThreads("Papierkorb"));
+
+    /**
+     * Ordner des Papierkorbs
+     *
+     * @since 1.0
+     */
+    private final Path directory;
+
+    /**
+     * Wartezeit in Millisekunden bis zum endgültigen Löschen
+     *
+     * @since 1.0
+     */
+    private final long delay;
+
+    /**
+     * Aktion nach jedem endgültigen Löschen, z.B. Aufräumen der {@link ContentStore Ablage}
+     *
+     * @since 1.0
+     */
+    private final Runnable afterPurge;
+
+    /**
+     * Konstruktion des Papierkorbs. Überreste vorheriger Sitzungen werden gleich im Hintergrund gelöscht.
+     *
+     * @param directory  Ordner des Papierkorbs
+     * @param delay      Wartezeit in Millisekunden bis zum endgültigen Löschen
+     * @param afterPurge Aktion nach jedem endgültigen Löschen
+     * @since 1.0
+     */
+    Trash(Path directory, long delay, Runnable afterPurge) {
+        this.directory = directory;
+        this.delay = delay;
+        this.afterPurge = afterPurge;
+
+        // Sofort auflisten, damit neue Unterordner dieser Sitzung nicht vorzeitig gelöscht werden
+        List<Path> leftovers = listLeftovers();
+        if (!leftovers.isEmpty()) {
+            Logging.log(Level.INFO, leftovers.size() + " Überreste im Papierkorb gefunden");
+            for (Path stage : leftovers) {
+                if (Files.exists(stage.resolve(DISCARDED)))
+                    executor.execute(() -> purge(stage));
+                else
+                    Logging.log(Level.WARNING, "\"" + stage + "\" stammt aus einer unterbrochenen Transaktion und "
+                            + "bleibt zum Zurückholen von Hand im Papierkorb");
+            }
+        }
+    }
+
+    /**
+     * Anlegen eines neuen, leeren Unterordners, in den entfernte Ordner und Dateien verschoben werden
+     *
+     * @return Pfad des Unterordners
+     * @throws IOException wenn der Unterordner nicht angelegt werden konnte
+     * @since 1.0
+     */
+    Path stage() throws IOException {
+        Files.createDirectories(directory);
+        return Files.createTempDirectory(directory, null);
+    }
+
+    /**
+     * Vormerken eines Unterordners zum endgültigen Löschen nach Ablauf der Wartezeit. Darf erst aufgerufen werden,
+     * wenn die Transaktion, zu der der Unterordner gehört, erfolgreich gespeichert wurde.
+     *
+     * @param stage Unterordner aus {@link #stage()}
+     * @since 1.0
+     */
+    void discard(Path stage) {
+        // Markieren, damit der Unterordner auch nach einem Absturz vor Ablauf der Wartezeit gelöscht wird
+        try {
+            Files.createFile(stage.resolve(DISCARDED));
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "\"" + stage + "\" konnte nicht zum Löschen markiert werden", e);
+        }
+        executor.schedule(() -> purge(stage), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Beenden des Papierkorbs. Noch nicht gelöschte Unterordner bleiben bis zum nächsten Start liegen.
+     *
+     * @since 1.0
+     */
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Auflisten aller Unterordner, die bei Beginn der Sitzung schon im Papierkorb liegen
+     *
+     * @return Liste der Unterordner
+     * @since 1.0
+     */
+    private List<Path> listLeftovers() {
+        List<Path> leftovers = new ArrayList<>();
+        if (!Files.isDirectory(directory))
+            return leftovers;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path stage : stream)
+                leftovers.add(stage);
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "Papierkorb \"" + directory + "\" konnte nicht gelesen werden", e);
+        }
+        return leftovers;
+    }
+
+    /**
+     * Endgültiges Löschen eines Unterordners. Zuerst werden alle Dateien gleichzeitig gelöscht, danach die dann
+     * leeren Ordner und die Markierung. Was sich nicht löschen lässt, bleibt bis zum nächsten Start liegen.
+     *
+     * @param stage Unterordner
+     * @since 1.0
+     */
+    private void purge(Path stage) {
+        try {
+            List<Path> files = new ArrayList<>();
+            Files.walkFileTree(stage, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attr) {
+                    // Die Markierung zuletzt löschen, damit ein Abbruch beim nächsten Start wiederholt wird
+                    if (!file.getParent().equals(stage) || !file.getFileName().toString().equals(DISCARDED))
+                        files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            if (files.size() > 1)
+                deleteInParallel(files);
+            FileUtils.delete(stage);
+            Logging.log(Level.INFO, "\"" + stage + "\" mit " + files.size() + " Dateien endgültig gelöscht");
+        } catch (IOException e) {
+            Logging.log(Level.WARNING, "\"" + stage + "\" konnte nicht endgültig gelöscht werden", e);
+        }
+        afterPurge.run();
+    }
+
+    /**
+     * Gleichzeitiges Löschen mehrerer Dateien auf {@link Constants#COPY_THREADS} Threads
+     *
+     * @param files Zu löschende Dateien
+     * @throws IOException wenn eine Datei nicht gelöscht werden konnte
+     * @since 1.0
+     */
+    private static void deleteInParallel(List<Path> files) throws IOException {
+        try (ParallelTasks tasks = new ParallelTasks("Löschen", Math.min(files.size(), Constants.COPY_THREADS))) {
+            for (Path file : files)
+                tasks.submit(() -> Files.deleteIfExists(file));
+            tasks.await();
+        }
+    }
+}
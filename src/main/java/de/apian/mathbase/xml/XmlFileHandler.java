@@ -6,10 +6,10 @@
 
 package de.apian.mathbase.xml;
 
-import de.apian.mathbase.gui.dialog.ErrorAlert;
 import de.apian.mathbase.util.Constants;
 import de.apian.mathbase.util.Logging;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
@@ -18,18 +18,14 @@ import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathException;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathFactory;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 
 /**
@@ -40,6 +36,9 @@ import java.util.logging.Level;
  * <p>
  * Die Dateien werden zuerst mithilfe der DOM-API eingelesen und dann als NodeList zurückgegeben,
  * um die Bearbeitung der Datei für andere Klassen möglichst einfach zu gestalten.
+ * <p>
+ * Für den Themenbaum werden normalerweise der schnellere {@link TopicTreeReader} und {@link TopicTreeWriter}
+ * verwendet; dieser Handler dient dann nur noch als Rückfallebene beim Laden.
  *
  * @author Benedikt Mödl
  * @version 1.0
@@ -56,6 +55,21 @@ public class XmlFileHandler {
      */
     private Document document;
 
+    /**
+     * Einmalig erzeugtes {@code XPath}-Objekt, das für alle Ausdrücke dieses Handlers verwendet wird.
+     *
+     * @since 1.0
+     */
+    private final XPath xPath;
+
+    /**
+     * Cache der bereits kompilierten XPath-Ausdrücke, damit z.B. beim Übersetzen in einen Themenbaum nicht für jeden
+     * Knoten dieselben Ausdrücke erneut kompiliert werden.
+     *
+     * @since 1.0
+     */
+    private final Map<String, XPathExpression> expressionCache = new HashMap<>();
+
     /**
      * Konstruktion eines FileHandlers
      *
@@ -75,42 +89,56 @@ public class XmlFileHandler {
         } catch (ParserConfigurationException | SAXException e) {
             throw new IOException("Fehler beim Parsen der Datei", e);
         }
+
+        xPath = XPathFactory.newInstance().newXPath();
     }
 
     /**
-     * Speichern des {@code document}-Objekts als menschenlesbare XML-Datei.
+     * Übersetzen des eingelesenen Dokuments in einen Themenbaum.
      *
-     * @param targetPath Pfad der Zieldatei relativ zum Arbeitsverzeichnis
-     * @throws TransformerException wenn das Transformieren fehlgeschlagen ist
-     * @throws IOException wenn das Speichern fehlgeschlagen ist
+     * @return Wurzel des Themenbaums
+     * @throws IOException wenn das Dokument keinen gültigen Themenbaum enthält
      * @since 1.0
      */
-    public void saveDocTo(String targetPath) throws IOException, TransformerException {
+    Topic toTopicTree() throws IOException {
+        Element rootElement = document.getDocumentElement();
+        if (!rootElement.getNodeName().equals(TopicTreeController.TAG_ROOT))
+            throw new IOException("Unerwartetes Wurzelelement \"" + rootElement.getNodeName() + "\"");
 
-        // Entfernen von Whitespace
-        document.normalizeDocument();
-        NodeList nodeList = getNodeList("//text()[normalize-space()='']");
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node node = nodeList.item(i);
-            node.getParentNode().removeChild(node);
+        Topic root = new Topic(null);
+        try {
+            collectChildren(rootElement, root);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Fehler beim Parsen der Datei", e);
         }
+        return root;
+    }
 
-        /*
-         * Definition einer Quelle aus dem Document und eines Ziels aus dem Zielpfad
-         * für den Transformer, der die XML-Datei schlussendlich erzeugt
-         */
-        DOMSource source = new DOMSource(document);
-        StreamResult result = new StreamResult(new FileWriter(targetPath));
-        TransformerFactory factory = TransformerFactory.newInstance();
-        factory.setAttribute("indent-number", "4");
-
-        Transformer transformer = factory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-        transformer.setOutputProperty("{http://xml.apache.org/xalan}indent-amount", "4");
-        transformer.transform(source, result); // Erzeugung der finalen XML-Datei
+    /**
+     * Rekursives Übertragen der Unterknoten und Inhalte eines Elements in den Themenbaum
+     *
+     * @param element Element, dessen Kinder übertragen werden
+     * @param topic   Zugehöriges Thema
+     * @since 1.0
+     */
+    private void collectChildren(Element element, Topic topic) {
+        NodeList contentList = getNodeList(TopicTreeController.TAG_CONTENT, element);
+        for (int i = 0; i < contentList.getLength(); i++) {
+            Element contentElement = (Element) contentList.item(i);
+            topic.getContents().add(new Content(
+                    Content.Type.forName(contentElement.getAttribute(TopicTreeController.ATTR_TYPE)),
+                    contentElement.getAttribute(TopicTreeController.ATTR_FILENAME),
+                    contentElement.hasAttribute(TopicTreeController.ATTR_CAPTION)
+                            ? contentElement.getAttribute(TopicTreeController.ATTR_CAPTION) : null));
+        }
+
+        NodeList nodeList = getNodeList(TopicTreeController.TAG_NODE, element);
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Element childElement = (Element) nodeList.item(i);
+            Topic child = new Topic(childElement.getAttribute(TopicTreeController.ATTR_TITLE));
+            topic.addChild(child);
+            collectChildren(childElement, child);
+        }
     }
 
     /**
@@ -124,7 +152,19 @@ public class XmlFileHandler {
      * @since 1.0
      */
     public NodeList getNodeList(String expr) {
-        return (NodeList) compileAndEvaluate(expr, XPathConstants.NODESET);
+        return getNodeList(expr, document);
+    }
+
+    /**
+     * Erzeugen einer {@code NodeList} mithilfe des XPath-Parsers ausgehend von einem bestimmten Kontextknoten.
+     *
+     * @param expr    XPath-Ausdruck
+     * @param context Kontextknoten, von dem aus der Ausdruck ausgewertet wird
+     * @return {@code NodeList}, die vom XPath-Parser erzeugt wurde
+     * @since 1.0
+     */
+    private NodeList getNodeList(String expr, Node context) {
+        return (NodeList) compileAndEvaluate(expr, context, XPathConstants.NODESET);
     }
 
     /**
@@ -139,29 +179,36 @@ public class XmlFileHandler {
      * @since 1.0
      */
     public Node getNode(String expr) {
-        return (Node) compileAndEvaluate(expr, XPathConstants.NODE);
+        return (Node) compileAndEvaluate(expr, document, XPathConstants.NODE);
     }
 
     /**
-     * Hilsmethode zum evaluieren von XPath-Ausdrücken
+     * Hilsmethode zum evaluieren von XPath-Ausdrücken.
+     * <p>
+     * Jeder Ausdruck wird nur beim ersten Auftreten kompiliert und danach aus dem Cache genommen.
      *
-     * @param expr XPath-Ausdruck
-     * @param type Der geforderte Rückgabe-Typ
+     * @param expr    XPath-Ausdruck
+     * @param context Kontextknoten der Auswertung
+     * @param type    Der geforderte Rückgabe-Typ
      * @return Das {@code Object} vom Typ {@code type}, welches das Ergebnis des evaluieren des XPath-Ausdrucks ist
+     * @throws IllegalStateException wenn der Ausdruck nicht übersetzt oder ausgewertet werden kann
      */
-    private Object compileAndEvaluate(String expr, QName type) {
+    private synchronized Object compileAndEvaluate(String expr, Node context, QName type) {
         try {
-            XPath xPath = XPathFactory.newInstance().newXPath();
-            return xPath.compile(expr).evaluate(document, type);
+            XPathExpression compiled = expressionCache.get(expr);
+            if (compiled == null) {
+                compiled = xPath.compile(expr);
+                expressionCache.put(expr, compiled);
+            }
+            return compiled.evaluate(context, type);
         } catch (XPathException e) {
             /*
              * Dieser Fall kann eigentlich niemals eintreten, da die XPathExpression hardgecoded ist.
              * Sollte unwahrscheinlicherweise doch einmal etwas an der XPath-API geändert werden,
              * wäre das gesamte Programm sowieso erstmal unbrauchbar!
              */
-            new ErrorAlert(e).showAndWait();
             Logging.log(Level.SEVERE, Constants.FATAL_ERROR_MESSAGE, e);
-            throw new InternalError(Constants.FATAL_ERROR_MESSAGE);
+            throw new IllegalStateException(Constants.FATAL_ERROR_MESSAGE, e);
         }
     }
 
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.util;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Test der Normalisierung von Titeln zu Datei- und Ordnernamen.
+ * <p>
+ * Die Namen bestehender Ordner und Dateien hängen davon ab, daher muss {@link FileUtils#normalize(String)} genau
+ * dasselbe liefern wie die ursprüngliche Normalisierung, die hier unverändert als {@link #legacyNormalize(String)}
+ * vorliegt.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class FileUtilsTest {
+
+    /**
+     * Titel, wie sie in der Oberfläche eingegeben werden
+     *
+     * @since 1.0
+     */
+    private static final List<String> TITLES = Arrays.asList(
+            "Asymmetrische Kryptologie", "Kombinatorik", "Säfte", "Arbeitsblätter", "Größter gemeinsamer Teiler",
+            "Übungsaufgaben zur Stochastik", "Satz des Pythagoras", "Binomialverteilung (Teil 2)",
+            "Pascal'sches Dreieck", "Lösungen: Blatt 1 – 3", "Ableitung von f(x) = x²", "Café-Rätsel",
+            "Poincaré-Vermutung", "Gödels Unvollständigkeitssätze", "Œuvre d'Euler", "Ångström & Ørsted",
+            "Łódź-Aufgabe", "Straße", "STRASSE", "Ähnlichkeit", "İstanbul", "π und e", "Σ-Notation",
+            "Mengenlehre ∩ ∪", "Arbeitsblatt als Word-Datei.docx", "Benes Gurke.mp4", "   ", "");
+
+    @Test
+    public void everyTableCharacterMatchesLegacy() {
+        for (char c = 0; c <= 0x024F; c++) {
+            String s = String.valueOf(c);
+            assertEquals(String.format("U+%04X", (int) c), legacyNormalize(s), FileUtils.normalize(s));
+            String embedded = "A" + c + " b";
+            assertEquals(String.format("U+%04X im Text", (int) c), legacyNormalize(embedded),
+                    FileUtils.normalize(embedded));
+        }
+    }
+
+    @Test
+    public void charactersOutsideTableMatchLegacy() {
+        // Zerlegte Akzente, Ångström-Zeichen, großes ß, Ligatur und Zeichen außerhalb der BMP
+        for (String s : Arrays.asList("e\u0301", "A\u030A\u030A", "\u212B", "\u1E9E", "\uFB01nale",
+                "\uD835\uDC9C-Menge", "\uD83D\uDE00 Lachen"))
+            assertEquals(s, legacyNormalize(s), FileUtils.normalize(s));
+    }
+
+    @Test
+    public void realTitlesMatchLegacy() throws Exception {
+        List<String> stored = titlesAndCaptions(new File("topic_tree.xml"));
+        assertFalse(stored.isEmpty());
+        List<String> titles = new ArrayList<>(TITLES);
+        titles.addAll(stored);
+
+        for (String title : titles) {
+            assertEquals(title, legacyNormalize(title), FileUtils.normalize(title));
+            // Zweiter Aufruf aus dem Zwischenspeicher
+            assertEquals(title, legacyNormalize(title), FileUtils.normalize(title));
+        }
+    }
+
+    /**
+     * Ursprüngliche Normalisierung vor Einführung der Ersetzungstabelle
+     *
+     * @param s Ausgangs-{@code String}
+     * @return Normalisierter {@code String}
+     * @since 1.0
+     */
+    private static String legacyNormalize(String s) {
+        s = s.toLowerCase().replace(" ", "_")
+                .replace("ä", "ae")
+                .replace("ö", "oe")
+                .replace("ü", "ue")
+                .replace("ß", "ss");
+        return Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("[^a-z_0-9.\\-]", "");
+    }
+
+    /**
+     * Sammeln aller Titel und Beschriftungen der XML-Datei des Themenbaums im Arbeitsverzeichnis
+     *
+     * @param file XML-Datei
+     * @return Titel und Beschriftungen
+     * @throws Exception wenn die Datei nicht gelesen werden kann
+     * @since 1.0
+     */
+    private static List<String> titlesAndCaptions(File file) throws Exception {
+        List<String> result = new ArrayList<>();
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        NodeList elements = document.getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            for (String attribute : new String[]{"title", "caption"}) {
+                if (element.hasAttribute(attribute))
+                    result.add(element.getAttribute(attribute));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test des Fehlerverhaltens von {@link ParallelTasks}.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class ParallelTasksTest {
+
+    @Test
+    public void runningTasksFinishBeforeFailureIsThrown() throws Exception {
+        AtomicBoolean slowFinished = new AtomicBoolean();
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch slowStarted = new CountDownLatch(1);
+
+        try (ParallelTasks tasks = new ParallelTasks("Test", 2)) {
+            tasks.submit(() -> {
+                slowStarted.countDown();
+                sleep(300);
+                slowFinished.set(true);
+                throw new IOException("langsam");
+            });
+            tasks.submit(() -> {
+                await(slowStarted);
+                throw new IOException("schnell");
+            });
+            for (int i = 0; i < 50; i++)
+                tasks.submit(started::incrementAndGet);
+            tasks.await();
+            fail("Fehler wurde nicht weitergeworfen");
+        } catch (IOException e) {
+            // Die langsame Operation lief bereits und wurde vollständig abgewartet
+            assertTrue(slowFinished.get());
+            assertEquals("langsam", e.getMessage());
+            assertEquals(1, e.getSuppressed().length);
+        }
+        // Nach dem ersten Fehler beginnt keine weitere Operation mehr
+        assertEquals(0, started.get());
+    }
+
+    @Test
+    public void closeWaitsForRunningTaskEvenWhenInterrupted() {
+        AtomicBoolean finished = new AtomicBoolean();
+        CountDownLatch running = new CountDownLatch(1);
+        ParallelTasks tasks = new ParallelTasks("Test", 1);
+        tasks.submit(() -> {
+            running.countDown();
+            sleep(300);
+            finished.set(true);
+        });
+
+        await(running);
+        Thread.currentThread().interrupt();
+        tasks.close();
+        assertTrue(finished.get());
+        assertTrue(Thread.interrupted());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
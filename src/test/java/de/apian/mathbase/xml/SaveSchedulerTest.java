@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test der Fehlerbehandlung des {@link SaveScheduler verzögerten Speicherns}.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class SaveSchedulerTest {
+
+    @Test
+    public void backgroundFailureIsThrownOnceAndSaveIsRetried() throws Exception {
+        IOException diskFull = new IOException("Datenträger voll");
+        AtomicInteger attempts = new AtomicInteger();
+        Semaphore saved = new Semaphore(0);
+        SaveScheduler scheduler = new SaveScheduler(() -> {
+            try {
+                if (attempts.incrementAndGet() == 1)
+                    throw diskFull;
+            } finally {
+                saved.release();
+            }
+        }, 10, 100);
+
+        scheduler.schedule();
+        assertTrue(saved.tryAcquire(10, TimeUnit.SECONDS));
+
+        // Die Sperre wird erst frei, wenn der Fehler vermerkt ist
+        synchronized (scheduler.getSaveLock()) {
+            // Die nächste Änderung erfährt vom Fehler, die übernächste nicht mehr
+            try {
+                scheduler.throwFailure();
+                fail("Fehler des Speicherns im Hintergrund wurde nicht weitergereicht");
+            } catch (IOException e) {
+                assertSame(diskFull, e.getCause());
+            }
+            scheduler.throwFailure();
+        }
+
+        // Auch ohne weitere Änderung wird erneut gespeichert
+        assertTrue(saved.tryAcquire(10, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+        scheduler.flush();
+        assertEquals(2, attempts.get());
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Belastungstest der Sperre des {@link TopicTreeController}s.
+ * <p>
+ * Mehrere Threads fügen gleichzeitig Themen hinzu, verschieben und benennen sie um, während andere Threads laufend
+ * lesen und dabei die Unveränderlichen des Themenbaums prüfen. Der Test arbeitet in einem eigenen temporären Ordner,
+ * der danach wieder entfernt wird.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class TopicTreeControllerConcurrencyTest {
+
+    /**
+     * Anzahl der schreibenden und der lesenden Threads
+     *
+     * @since 1.0
+     */
+    private static final int WRITERS = 4, READERS = 4;
+
+    /**
+     * Anzahl der Themen je schreibendem Thread
+     *
+     * @since 1.0
+     */
+    private static final int TOPICS_PER_WRITER = 25;
+
+    /**
+     * Anzahl der Verschiebungen bzw. Umbenennungen je schreibendem Thread
+     *
+     * @since 1.0
+     */
+    private static final int CHANGES_PER_WRITER = 50;
+
+    /**
+     * Anzahl der Eimer, zwischen denen die Themen verschoben werden; sie selbst werden nie verändert
+     *
+     * @since 1.0
+     */
+    private static final int BUCKETS = 4;
+
+    private static final String ROOT = "Belastungstest";
+
+    private Path directory;
+
+    private TopicTreeController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("belastungstest");
+        Files.write(directory.resolve("topic_tree.xml"), "<topic_tree></topic_tree>".getBytes("UTF-8"));
+        Files.createDirectory(directory.resolve(TopicTreeController.TOPICS_PATH));
+        controller = TopicTreeController.open(directory);
+        TopicTreeTransaction transaction = controller.beginTransaction().addNode(ROOT, null);
+        for (int i = 0; i < BUCKETS; i++)
+            transaction.addNode(bucket(i), ROOT);
+        transaction.commit();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            controller.close();
+        } finally {
+            FileUtils.delete(directory);
+        }
+    }
+
+    @Test
+    public void readersSeeConsistentTreeDuringConcurrentChanges() throws Exception {
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<List<String>> titles = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            List<String> own = new ArrayList<>();
+            titles.add(own);
+            int writer = w;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    write(writer, own);
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }, "Schreiber-" + w));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    while (writing.get())
+                        checkInvariants();
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }, "Leser-" + r));
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        start.countDown();
+        for (Thread thread : threads.subList(0, WRITERS))
+            thread.join(TimeUnit.MINUTES.toMillis(2));
+        writing.set(false);
+        for (Thread thread : threads)
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+
+        assertTrue("Fehler in Threads: " + failures, failures.isEmpty());
+        checkInvariants();
+
+        // Jedes Thema liegt genau einmal in genau einem Eimer und hat seinen Ordner
+        Set<String> expected = new HashSet<>();
+        for (List<String> own : titles)
+            expected.addAll(own);
+        Set<String> actual = new HashSet<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            for (String title : controller.getChildren(bucket(i))) {
+                assertTrue("Doppeltes Thema " + title, actual.add(title));
+                assertTrue("Ordner von " + title + " fehlt",
+                        Files.isDirectory(Paths.get(controller.locateDirectory(title))));
+            }
+        }
+        assertEquals(expected, actual);
+        for (String title : expected)
+            assertTrue(title, controller.doesExist(title));
+    }
+
+    /**
+     * Arbeit eines schreibenden Threads: Hinzufügen eigener Themen, dann zufälliges Verschieben und Umbenennen. Jede
+     * Umbenennung ändert auch den normalisierten Titel und damit den Ordner.
+     *
+     * @param writer Nummer des Threads
+     * @param own    Aktuelle Titel der eigenen Themen
+     * @throws Exception wenn eine Änderung fehlschlägt
+     * @since 1.0
+     */
+    private void write(int writer, List<String> own) throws Exception {
+        Random random = new Random(writer);
+        for (int i = 0; i < TOPICS_PER_WRITER; i++) {
+            String title = "Thema " + writer + "-" + i;
+            controller.addNode(title, bucket(random.nextInt(BUCKETS)));
+            own.add(title);
+        }
+        for (int i = 0; i < CHANGES_PER_WRITER; i++) {
+            int index = random.nextInt(own.size());
+            if (random.nextBoolean()) {
+                String title = "Thema " + writer + "-" + index + " Nr. " + i;
+                controller.renameNode(own.get(index), title);
+                own.set(index, title);
+            } else {
+                controller.moveNode(own.get(index), bucket(random.nextInt(BUCKETS)));
+            }
+        }
+    }
+
+    /**
+     * Prüfen der Unveränderlichen des Teilbaums: Die Wurzel des Teilbaums existiert, kein Eimer enthält ein Thema
+     * doppelt, und der aktuelle Stand enthält keinen Titel doppelt.
+     *
+     * @since 1.0
+     */
+    private void checkInvariants() {
+        assertTrue(controller.doesExist(ROOT));
+        for (int i = 0; i < BUCKETS; i++) {
+            String[] children = controller.getChildren(bucket(i));
+            Set<String> seen = new HashSet<>();
+            for (String child : children)
+                assertTrue("Doppeltes Thema " + child, seen.add(child));
+        }
+
+        TopicSnapshot snapshot = controller.getSnapshot().find(ROOT);
+        if (snapshot != null)
+            collectUnique(snapshot, new HashSet<>());
+    }
+
+    /**
+     * Sammeln aller Titel eines Stands, wobei jeder nur einmal vorkommen darf
+     *
+     * @param snapshot Stand
+     * @param titles   Bereits gesammelte Titel
+     * @since 1.0
+     */
+    private static void collectUnique(TopicSnapshot snapshot, Set<String> titles) {
+        assertTrue("Doppeltes Thema " + snapshot.getTitle(), titles.add(snapshot.getTitle()));
+        for (TopicSnapshot child : snapshot.getChildren())
+            collectUnique(child, titles);
+    }
+
+    private String bucket(int i) {
+        return "Eimer " + i;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test des Zurückrollens von {@link TopicTreeTransaction}s bei ungültigen Schritten.
+ * <p>
+ * Der Test arbeitet in einem eigenen temporären Ordner, der danach wieder entfernt wird.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class TopicTreeTransactionTest {
+
+    private Path directory;
+
+    private TopicTreeController controller;
+
+    private String root = "Transaktionstest";
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("transaktionstest");
+        Files.write(directory.resolve("topic_tree.xml"), "<topic_tree></topic_tree>".getBytes("UTF-8"));
+        Files.createDirectory(directory.resolve(TopicTreeController.TOPICS_PATH));
+        controller = TopicTreeController.open(directory);
+        controller.addNode(root, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            controller.close();
+        } finally {
+            FileUtils.delete(directory);
+        }
+    }
+
+    @Test
+    public void unknownTitleRollsBackEarlierSteps() throws Exception {
+        String added = root + " A";
+        try {
+            controller.beginTransaction()
+                    .addNode(added, root)
+                    .removeNode(root + " gibt es nicht")
+                    .commit();
+            fail("Unbekannter Titel wurde nicht erkannt");
+        } catch (IllegalArgumentException e) {
+            // Erwartet
+        }
+
+        assertFalse(controller.doesExist(added));
+        assertEquals(0, controller.getChildCount(root));
+    }
+
+    @Test
+    public void moveUnderOwnDescendantIsRejected() throws Exception {
+        String parent = root + " A";
+        String child = root + " B";
+        String added = root + " C";
+        controller.beginTransaction().addNode(parent, root).addNode(child, parent).commit();
+
+        try {
+            controller.beginTransaction()
+                    .addNode(added, root)
+                    .moveNode(parent, child)
+                    .commit();
+            fail("Verschieben unter einen Nachfahren wurde nicht erkannt");
+        } catch (TitleCollisionException e) {
+            // Erwartet
+        }
+
+        assertFalse(controller.doesExist(added));
+        assertArrayEquals(new String[]{parent}, controller.getChildren(root));
+        assertArrayEquals(new String[]{child}, controller.getChildren(parent));
+        assertEquals(0, controller.getChildCount(child));
+        assertTrue(Files.isDirectory(Paths.get(controller.locateDirectory(child))));
+        assertEquals(Paths.get(controller.locateDirectory(parent)),
+                Paths.get(controller.locateDirectory(child)).getParent());
+    }
+
+    @Test
+    public void renameOntoOtherTopicIsRejected() throws Exception {
+        String first = root + " A";
+        String second = root + " B";
+        controller.beginTransaction().addNode(first, root).addNode(second, root).commit();
+        Files.write(Paths.get(controller.locateDirectory(first)).resolve("a.txt"), new byte[]{1});
+
+        // Gleicher Titel und gleich normalisierter Titel
+        for (String to : new String[]{second, second.toUpperCase()}) {
+            try {
+                controller.renameNode(first, to);
+                fail("Umbenennen auf \"" + to + "\" wurde nicht erkannt");
+            } catch (TitleCollisionException e) {
+                // Erwartet
+            }
+        }
+
+        assertArrayEquals(new String[]{first, second}, controller.getChildren(root));
+        assertTrue(Files.exists(Paths.get(controller.locateDirectory(first)).resolve("a.txt")));
+        assertFalse(Files.exists(Paths.get(controller.locateDirectory(second)).resolve("a.txt")));
+
+        // Eine andere Schreibweise des eigenen Titels bleibt erlaubt
+        controller.renameNode(first, first.toUpperCase());
+        assertTrue(controller.doesExist(first.toUpperCase()));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 MathBox P-Seminar 16/18. All rights reserved.
+ * This product is licensed under the GNU General Public License v3.0.
+ * See LICENSE file for further information.
+ */
+
+package de.apian.mathbase.xml;
+
+import de.apian.mathbase.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test des Aufräumens im {@link Trash Papierkorb} beim Start.
+ * <p>
+ * Der Test arbeitet in einem eigenen temporären Ordner, der danach wieder entfernt wird.
+ *
+ * @author Nikolas Kirschstein
+ * @version 1.0
+ * @since 1.0
+ */
+public class TrashTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("papierkorb");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.delete(directory);
+    }
+
+    @Test
+    public void onlyDiscardedStagesArePurgedOnStart() throws Exception {
+        // Erste Sitzung: ein freigegebener und ein unterbrochener Unterordner, beide noch nicht gelöscht
+        Trash previous = new Trash(directory, TimeUnit.HOURS.toMillis(1), () -> {
+        });
+        Path discarded = previous.stage();
+        Files.createDirectories(discarded.resolve("Thema"));
+        Files.write(discarded.resolve("Thema").resolve("a.txt"), new byte[]{1});
+        Files.write(discarded.resolve("Thema").resolve("b.txt"), new byte[]{2});
+        previous.discard(discarded);
+        Path interrupted = previous.stage();
+        Files.write(interrupted.resolve("c.txt"), new byte[]{3});
+        previous.close();
+
+        // Zweite Sitzung: nur der freigegebene Unterordner wird gelöscht
+        CountDownLatch purged = new CountDownLatch(1);
+        Trash next = new Trash(directory, TimeUnit.HOURS.toMillis(1), purged::countDown);
+        assertTrue(purged.await(10, TimeUnit.SECONDS));
+        next.close();
+
+        assertFalse(Files.exists(discarded));
+        assertTrue(Files.exists(interrupted.resolve("c.txt")));
+    }
+}